@@ -0,0 +1,261 @@
+package server;
+
+import model.Event;
+import model.User;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory index of the users available to play a game: online and without an
+ * {@link Event.EventStatus#ACCEPTED} or {@link Event.EventStatus#PLAYING} event
+ * {@link DatabaseHelper} updates it with every write of a user or an event, so the lobby is read without a query.
+ * Changes are serialized by a lock while reads go to concurrent maps and never wait
+ */
+public class AvailabilityIndex {
+
+    /**
+     * The online users by username, their password hidden
+     */
+    private final Map<String, User> online;
+
+    /**
+     * The events keeping their users busy, by event identifier
+     */
+    private final Map<Integer, Event> busyEvents;
+
+    /**
+     * The identifiers of the events keeping a user busy, by username. A user without such event has no entry
+     */
+    private final Map<String, Set<Integer>> busyUsers;
+
+    /**
+     * The available users sorted by username, read without the lock
+     */
+    private final ConcurrentSkipListMap<String, User> available;
+
+    /**
+     * Serializes the changes so the maps stay consistent with each other
+     */
+    private final ReentrantLock lock;
+
+    /**
+     * Default constructor, every user is offline
+     */
+    public AvailabilityIndex() {
+        this.online = new HashMap<>();
+        this.busyEvents = new HashMap<>();
+        this.busyUsers = new ConcurrentHashMap<>();
+        this.available = new ConcurrentSkipListMap<>();
+        this.lock = new ReentrantLock();
+    }
+
+    /**
+     * Replaces the content of the index, used when the database is opened
+     * @param onlineUsers Every online user
+     * @param events Every event keeping its users busy
+     */
+    public void load(Collection<User> onlineUsers, Collection<Event> events) {
+        lock.lock();
+        try {
+            clear();
+            for (User user : onlineUsers) {
+                online.put(user.getUsername(), hidePassword(user));
+            }
+            for (Event event : events) {
+                addBusyEvent(event);
+            }
+            for (String username : online.keySet()) {
+                refresh(username);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records a user written to the database, e.g. when logging in or out
+     * @param user The user as it was written
+     */
+    public void updateUser(User user) {
+        lock.lock();
+        try {
+            if (user.isOnline()) {
+                online.put(user.getUsername(), hidePassword(user));
+            } else {
+                online.remove(user.getUsername());
+            }
+            refresh(user.getUsername());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records an event written to the database, e.g. when an invitation is accepted or a game completes
+     * @param event The event as it was written
+     */
+    public void updateEvent(Event event) {
+        lock.lock();
+        try {
+            if (isBusy(event.getStatus())) {
+                addBusyEvent(event);
+            } else {
+                removeBusyEvent(event.getEventId());
+            }
+            refresh(event.getSender());
+            refresh(event.getOpponent());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records the events of a user being aborted
+     * @param username The username of the user
+     */
+    public void abortAllUserEvents(String username) {
+        lock.lock();
+        try {
+            Set<Integer> eventIds = busyUsers.get(username);
+            if (eventIds == null) {
+                return;
+            }
+            for (Integer eventId : new ArrayList<>(eventIds)) {
+                Event event = removeBusyEvent(eventId);
+                refresh(event.getSender());
+                refresh(event.getOpponent());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records every user being set offline
+     */
+    public void setAllUsersOffline() {
+        lock.lock();
+        try {
+            online.clear();
+            available.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes every user and event, used when the database is truncated
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            online.clear();
+            busyEvents.clear();
+            busyUsers.clear();
+            available.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the available users, in the order of their usernames
+     * @param username The username of the user looking for available users, left out
+     * @return a copy of the available users, their password hidden
+     */
+    public List<User> getAvailableUsers(String username) {
+        List<User> users = new ArrayList<>();
+        for (User user : available.values()) {
+            if (!user.getUsername().equals(username)) {
+                users.add(new User(user.getUsername(), "", user.getDisplayName(), true));
+            }
+        }
+        return users;
+    }
+
+    /**
+     * Checks if a user is free to play a game, whether it is online or not
+     * @param username The username of the user
+     * @return true if the user has no event with status {@link Event.EventStatus#ACCEPTED} or {@link Event.EventStatus#PLAYING}
+     */
+    public boolean isUserAvailable(String username) {
+        return !busyUsers.containsKey(username);
+    }
+
+    /**
+     * Checks if an event status keeps its users busy
+     * @param status The status of the event
+     * @return true for {@link Event.EventStatus#ACCEPTED} and {@link Event.EventStatus#PLAYING}
+     */
+    static boolean isBusy(Event.EventStatus status) {
+        return status == Event.EventStatus.ACCEPTED || status == Event.EventStatus.PLAYING;
+    }
+
+    /**
+     * Adds an event keeping its users busy, must be called with the lock held
+     * @param event The event
+     */
+    private void addBusyEvent(Event event) {
+        if (busyEvents.put(event.getEventId(), event) == null) {
+            busyUsers.computeIfAbsent(event.getSender(), username -> new HashSet<>()).add(event.getEventId());
+            busyUsers.computeIfAbsent(event.getOpponent(), username -> new HashSet<>()).add(event.getEventId());
+        }
+    }
+
+    /**
+     * Removes an event that no longer keeps its users busy, must be called with the lock held
+     * @param eventId The identifier of the event
+     * @return the event removed, null if it was not busy
+     */
+    private Event removeBusyEvent(int eventId) {
+        Event event = busyEvents.remove(eventId);
+        if (event != null) {
+            removeBusyUser(event.getSender(), eventId);
+            removeBusyUser(event.getOpponent(), eventId);
+        }
+        return event;
+    }
+
+    /**
+     * Removes an event from the busy events of a user, must be called with the lock held
+     * @param username The username of the user
+     * @param eventId The identifier of the event
+     */
+    private void removeBusyUser(String username, int eventId) {
+        Set<Integer> eventIds = busyUsers.get(username);
+        if (eventIds != null && eventIds.remove(eventId) && eventIds.isEmpty()) {
+            busyUsers.remove(username);
+        }
+    }
+
+    /**
+     * Adds or removes a user from the available users, must be called with the lock held
+     * @param username The username of the user
+     */
+    private void refresh(String username) {
+        User user = online.get(username);
+        if (user != null && !busyUsers.containsKey(username)) {
+            available.put(username, user);
+        } else if (username != null) {
+            available.remove(username);
+        }
+    }
+
+    /**
+     * Copies a user without its password, the index never keeps passwords
+     * @param user The user
+     * @return the copy
+     */
+    private static User hidePassword(User user) {
+        return new User(user.getUsername(), "", user.getDisplayName(), user.isOnline());
+    }
+}
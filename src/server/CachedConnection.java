@@ -0,0 +1,98 @@
+package server;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A SQLite connection with a cache of its prepared statements, keyed by their SQL
+ * SQLite compiles a statement when it is prepared, a cached statement is compiled once and then only rebound.
+ * A connection is used by one thread at a time, handed out by {@link ConnectionPool} or guarded by the writer lock
+ * of {@link DatabaseHelper}, so the cache is not synchronized
+ */
+class CachedConnection {
+
+    /**
+     * Most statements kept, the least recently used one is closed beyond it
+     */
+    private static final int MAX_STATEMENTS = 64;
+
+    /**
+     * The connection
+     */
+    private final Connection connection;
+
+    /**
+     * The prepared statements by SQL, least recently used first
+     */
+    private final Map<String, PreparedStatement> statements;
+
+    /**
+     * Default constructor
+     * @param connection The connection
+     */
+    CachedConnection(Connection connection) {
+        this.connection = connection;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() <= MAX_STATEMENTS) {
+                    return false;
+                }
+                close(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Getter function for {@link #connection} attribute
+     * @return connection
+     */
+    Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Gets the prepared statement of a SQL query, preparing it on first use
+     * The statement stays open for the next caller: it must not be closed, only its result set
+     * @param sql The SQL query
+     * @return the prepared statement, its parameters set by the previous caller are overwritten when bound again
+     * @throws SQLException if database error occurs
+     */
+    PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement statement = statements.get(sql);
+        if (statement == null) {
+            statement = connection.prepareStatement(sql);
+            statements.put(sql, statement);
+        }
+        return statement;
+    }
+
+    /**
+     * Closes the cached statements and the connection
+     */
+    void close() {
+        for (PreparedStatement statement : statements.values()) {
+            close(statement);
+        }
+        statements.clear();
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    /**
+     * Closes a statement, ignoring failures since it is no longer used
+     * @param statement The statement
+     */
+    private static void close(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException ignored) {
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package server;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded pool of read-only SQLite connections, used by {@link DatabaseHelper} so reads run concurrently
+ * Connections are opened when first needed, up to the maximum; a reader waits when all of them are in use.
+ * Idle connections keep their prepared statements, see {@link CachedConnection}.
+ * The database is in WAL mode, so readers see the last committed data without waiting for the writer.
+ */
+class ConnectionPool {
+
+    /**
+     * The JDBC url of the database
+     */
+    private final String url;
+
+    /**
+     * How long a connection waits for a lock held by another connection, in milliseconds
+     */
+    private final int busyTimeoutMillis;
+
+    /**
+     * Connections not in use
+     */
+    private final Deque<CachedConnection> idle;
+
+    /**
+     * Guards {@link #idle}, {@link #opened} and {@link #maxSize}
+     */
+    private final ReentrantLock lock;
+
+    /**
+     * Signalled when a connection is released or may be opened
+     */
+    private final Condition available;
+
+    /**
+     * Number of connections opened and not closed, in use or idle
+     */
+    private int opened;
+
+    /**
+     * Most connections opened at the same time
+     */
+    private int maxSize;
+
+    /**
+     * Default constructor
+     * @param url The JDBC url of the database
+     * @param maxSize Most connections opened at the same time
+     * @param busyTimeoutMillis How long a connection waits for a lock held by another connection, in milliseconds
+     */
+    ConnectionPool(String url, int maxSize, int busyTimeoutMillis) {
+        this.url = url;
+        this.busyTimeoutMillis = busyTimeoutMillis;
+        this.idle = new ArrayDeque<>();
+        this.lock = new ReentrantLock();
+        this.available = lock.newCondition();
+        setMaxSize(maxSize);
+    }
+
+    /**
+     * Setter function for {@link #maxSize} attribute
+     * Connections above a lower maximum are closed as they are released
+     * @param maxSize Most connections opened at the same time
+     */
+    void setMaxSize(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be positive");
+        }
+        lock.lock();
+        try {
+            this.maxSize = maxSize;
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes a connection, opening one if none is idle and the maximum is not reached
+     * @return a connection that must be given back with {@link #release(CachedConnection)}
+     * @throws SQLException When the connection can not be opened or the thread is interrupted while waiting
+     */
+    CachedConnection acquire() throws SQLException {
+        lock.lock();
+        try {
+            while (idle.isEmpty() && opened >= maxSize) {
+                available.await();
+            }
+            CachedConnection connection = idle.pollFirst();
+            if (connection != null) {
+                return connection;
+            }
+            opened++;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        } finally {
+            lock.unlock();
+        }
+        try {
+            return open();
+        } catch (SQLException | RuntimeException e) {
+            lock.lock();
+            try {
+                opened--;
+                available.signal();
+            } finally {
+                lock.unlock();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Gives back a connection taken with {@link #acquire()}
+     * @param connection The connection
+     */
+    void release(CachedConnection connection) {
+        boolean close;
+        lock.lock();
+        try {
+            close = opened > maxSize;
+            if (close) {
+                opened--;
+            } else {
+                idle.addFirst(connection); // the most recently used connection has the warmest caches
+            }
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+        if (close) {
+            connection.close();
+        }
+    }
+
+    /**
+     * Opens a read-only connection
+     * @return the connection, without cached statements
+     * @throws SQLException When the connection can not be opened
+     */
+    private CachedConnection open() throws SQLException {
+        Connection connection = DriverManager.getConnection(url);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("PRAGMA busy_timeout = " + busyTimeoutMillis + ";");
+            statement.execute("PRAGMA query_only = true;");
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        return new CachedConnection(connection);
+    }
+}
@@ -0,0 +1,252 @@
+package server;
+
+import socket.GamingResponse;
+import socket.Response;
+import socket.WireProtocol;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Responses that never change, encoded once per {@link WireProtocol} when the class is loaded
+ * {@link FrameCodec#encodeResponse(Response)} writes their frames as they are instead of serializing them again.
+ * The instances are shared by every session, so they are read-only: their setters throw an
+ * {@link UnsupportedOperationException}, and a response that needs a request id is copied with
+ * {@link #withRequestId(Response, Integer)}
+ */
+final class ConstantResponses {
+
+    /**
+     * Answers a request that can not be decoded or has an unknown type
+     */
+    static final Response INVALID_REQUEST = new ReadOnlyResponse(Response.ResponseStatus.FAILURE, "Invalid Request");
+
+    /**
+     * Answers a request that needs a logged in user
+     */
+    static final Response NOT_LOGGED_IN = new ReadOnlyResponse(Response.ResponseStatus.FAILURE, "Not logged in");
+
+    /**
+     * Answers an invitation request for an event that can not be changed
+     */
+    static final Response INVALID_EVENT_ID = new ReadOnlyResponse(Response.ResponseStatus.FAILURE, "Invalid Event ID");
+
+    /**
+     * Answers a request to end a game that is not being played
+     */
+    static final Response INVALID_GAME = new ReadOnlyResponse(Response.ResponseStatus.FAILURE, "Invalid Game");
+
+    /**
+     * Answers a move outside of the board
+     */
+    static final Response INVALID_MOVE = new ReadOnlyResponse(Response.ResponseStatus.FAILURE, "Invalid Move");
+
+    /**
+     * Answers a move sent while the opponent has to move
+     */
+    static final Response NOT_YOUR_TURN = new ReadOnlyResponse(Response.ResponseStatus.FAILURE, "Not your turn to move");
+
+    /**
+     * Answers a move sent without a game being played
+     */
+    static final Response NO_ACTIVE_GAME = new ReadOnlyResponse(Response.ResponseStatus.FAILURE, "No active Game");
+
+    /**
+     * Answers a move that was accepted
+     */
+    static final Response MOVE_ADDED = new ReadOnlyResponse(Response.ResponseStatus.SUCCESS, "New mode added to Game");
+
+    /**
+     * Answers the acknowledgement of an invitation response
+     */
+    static final Response ACKNOWLEDGED = new ReadOnlyResponse(Response.ResponseStatus.SUCCESS, "Acknowledged");
+
+    /**
+     * Answers a heartbeat
+     */
+    static final Response PONG = new ReadOnlyResponse(Response.ResponseStatus.SUCCESS, "Pong");
+
+    /**
+     * Sent when the server is saturated
+     */
+    static final Response SERVER_BUSY = new ReadOnlyResponse(Response.ResponseStatus.FAILURE, "Server Busy");
+
+    /**
+     * Answers a move update request without a game being played
+     */
+    static final GamingResponse NO_ACTIVE_GAME_UPDATE = new ReadOnlyGamingResponse(Response.ResponseStatus.FAILURE, "No active Game", -1, false);
+
+    /**
+     * The frames of every constant response, indexed by {@link WireProtocol#ordinal()}
+     */
+    private static final Map<Response, byte[][]> FRAMES = new IdentityHashMap<>();
+
+    static {
+        Response[] responses = {INVALID_REQUEST, NOT_LOGGED_IN, INVALID_EVENT_ID, INVALID_GAME, INVALID_MOVE, NOT_YOUR_TURN,
+                NO_ACTIVE_GAME, MOVE_ADDED, ACKNOWLEDGED, PONG, SERVER_BUSY, NO_ACTIVE_GAME_UPDATE};
+        try {
+            for (Response response : responses) {
+                byte[][] frames = new byte[WireProtocol.values().length][];
+                for (WireProtocol protocol : WireProtocol.values()) {
+                    frames[protocol.ordinal()] = FrameCodec.encodeUncompressed(response, protocol);
+                }
+                FRAMES.put(response, frames);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The class only has static members
+     */
+    private ConstantResponses() {
+    }
+
+    /**
+     * Gets the pre-encoded frame of a response
+     * @param response The response
+     * @param protocol The protocol of the frame
+     * @return the uncompressed frame, header included, or null if the response is not a constant. Must not be modified
+     */
+    static byte[] frame(Response response, WireProtocol protocol) {
+        byte[][] frames = FRAMES.get(response);
+        return frames == null ? null : frames[protocol.ordinal()];
+    }
+
+    /**
+     * Sets the request id echoed on a response, copying the response if it is a constant
+     * @param response The response
+     * @param requestId The identifier of the request, may be null
+     * @return the response carrying the request id
+     */
+    static Response withRequestId(Response response, Integer requestId) {
+        if (FRAMES.containsKey(response)) {
+            if (requestId == null) {
+                return response; // the constant carries no id already
+            }
+            response = copy(response);
+        }
+        response.setRequestId(requestId);
+        return response;
+    }
+
+    /**
+     * Copies a response, keeping its class
+     * @param response The response to copy
+     * @return the copy
+     */
+    private static Response copy(Response response) {
+        if (response instanceof GamingResponse) {
+            GamingResponse gamingResponse = (GamingResponse) response;
+            return new GamingResponse(response.getStatus(), response.getMessage(), gamingResponse.getMove(), gamingResponse.isActive());
+        }
+        return new Response(response.getStatus(), response.getMessage());
+    }
+
+    /**
+     * A {@link Response} whose fields can not be changed once created
+     */
+    private static final class ReadOnlyResponse extends Response {
+
+        /**
+         * Creates the response
+         * @param status The status of the response
+         * @param message The message of the response
+         */
+        private ReadOnlyResponse(ResponseStatus status, String message) {
+            super(status, message);
+        }
+
+        /**
+         * Always fails, the response is shared
+         * @param status The status that would be set
+         */
+        @Override
+        public void setStatus(ResponseStatus status) {
+            throw new UnsupportedOperationException("Constant Response");
+        }
+
+        /**
+         * Always fails, the response is shared
+         * @param message The message that would be set
+         */
+        @Override
+        public void setMessage(String message) {
+            throw new UnsupportedOperationException("Constant Response");
+        }
+
+        /**
+         * Always fails, the response is shared
+         * @param requestId The request id that would be set
+         */
+        @Override
+        public void setRequestId(Integer requestId) {
+            throw new UnsupportedOperationException("Constant Response");
+        }
+    }
+
+    /**
+     * A {@link GamingResponse} whose fields can not be changed once created
+     */
+    private static final class ReadOnlyGamingResponse extends GamingResponse {
+
+        /**
+         * Creates the response
+         * @param status The status of the response
+         * @param message The message of the response
+         * @param move The move of the response
+         * @param active Whether the game is still being played
+         */
+        private ReadOnlyGamingResponse(ResponseStatus status, String message, int move, boolean active) {
+            super(status, message, move, active);
+        }
+
+        /**
+         * Always fails, the response is shared
+         * @param status The status that would be set
+         */
+        @Override
+        public void setStatus(ResponseStatus status) {
+            throw new UnsupportedOperationException("Constant Response");
+        }
+
+        /**
+         * Always fails, the response is shared
+         * @param message The message that would be set
+         */
+        @Override
+        public void setMessage(String message) {
+            throw new UnsupportedOperationException("Constant Response");
+        }
+
+        /**
+         * Always fails, the response is shared
+         * @param requestId The request id that would be set
+         */
+        @Override
+        public void setRequestId(Integer requestId) {
+            throw new UnsupportedOperationException("Constant Response");
+        }
+
+        /**
+         * Always fails, the response is shared
+         * @param move The move that would be set
+         */
+        @Override
+        public void setMove(int move) {
+            throw new UnsupportedOperationException("Constant Response");
+        }
+
+        /**
+         * Always fails, the response is shared
+         * @param active The state that would be set
+         */
+        @Override
+        public void setActive(boolean active) {
+            throw new UnsupportedOperationException("Constant Response");
+        }
+    }
+}
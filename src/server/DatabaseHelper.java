@@ -6,6 +6,7 @@ import java.sql.*;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -73,24 +74,119 @@ public class DatabaseHelper {
 
 
     /**
-     * Stores the only class instance
+     * JDBC url of the database file
      */
-    private static DatabaseHelper instance;
+    private static final String DB_PATH = "jdbc:sqlite:TicTacToe.db";
 
     /**
-     * Store the database connection
+     * How long a connection waits for a lock held by another connection, in milliseconds
      */
-    private Connection connection;
+    private static final int BUSY_TIMEOUT_MILLIS = 5000;
+
+    /**
+     * Default number of read connections
+     */
+    private static final int DEFAULT_READ_CONNECTIONS = 4;
+
+    /**
+     * Default number of users, and of events, kept in memory
+     */
+    private static final int DEFAULT_CACHE_SIZE = 1024;
+
+    /**
+     * Longest time a completed or aborted event stays cached, in milliseconds
+     * Finished games are only read by the last polls of their players
+     */
+    private static final long FINISHED_EVENT_IDLE_MILLIS = 1000;
+
+    /**
+     * The only connection writing to the database
+     */
+    private CachedConnection writer;
+
+    /**
+     * Serializes the writes made on {@link #writer}
+     */
+    private final ReentrantLock writerLock = new ReentrantLock();
+
+    /**
+     * Read-only connections, used concurrently by the reads
+     */
+    private final ConnectionPool readers = new ConnectionPool(DB_PATH, DEFAULT_READ_CONNECTIONS, BUSY_TIMEOUT_MILLIS);
+
+    /**
+     * The schema changes in order, the one at index i upgrades the database from version i to version i + 1
+     * Released migrations must never change, a new schema needs a new migration appended
+     */
+    private final Migration[] migrations = {this::createTables, this::migrateToIntegerColumns};
+
+    /**
+     * The users available to play a game, kept up to date by every write of a user or an event
+     */
+    private final AvailabilityIndex availability = new AvailabilityIndex();
+
+    /**
+     * How long a cached user or event may stay unused, in milliseconds
+     */
+    private volatile long cacheIdleMillis = 60_000;
+
+    /**
+     * The users read or written last, by username
+     */
+    private final RowCache<String, User> userCache = new RowCache<>(DEFAULT_CACHE_SIZE,
+            user -> new User(user.getUsername(), user.getPassword(), user.getDisplayName(), user.isOnline()),
+            user -> cacheIdleMillis);
+
+    /**
+     * The events read or written last, by event identifier
+     */
+    private final RowCache<Integer, Event> eventCache = new RowCache<>(DEFAULT_CACHE_SIZE,
+            event -> new Event(event.getEventId(), event.getSender(), event.getOpponent(), event.getStatus(), event.getTurn(), event.getMove()),
+            event -> event.getStatus() == Event.EventStatus.COMPLETED || event.getStatus() == Event.EventStatus.ABORTED
+                    ? Math.min(cacheIdleMillis, FINISHED_EVENT_IDLE_MILLIS) : cacheIdleMillis);
+
+    /**
+     * A change of the database schema, run by {@link #migrate()}
+     */
+    @FunctionalInterface
+    private interface Migration {
+        /**
+         * Runs the change, inside the transaction that records the version it reaches
+         * @param statement The statement to run the change with
+         * @throws SQLException if database error occurs
+         */
+        void run(Statement statement) throws SQLException;
+    }
+
+    /**
+     * A unit of database work run on a connection by {@link #read(ConnectionWork)} or {@link #write(ConnectionWork)}
+     * @param <T> The type of the result of the work
+     */
+    @FunctionalInterface
+    private interface ConnectionWork<T> {
+        /**
+         * Runs the work
+         * @param connection The connection to use, must not be kept after the work returns. Its cached statements must not be closed
+         * @return the result of the work
+         * @throws SQLException if database error occurs
+         */
+        T run(CachedConnection connection) throws SQLException;
+    }
+
+    /**
+     * Lazily creates the only class instance when first accessed
+     * The class loader guarantees a single initialization, so the getter takes no lock
+     */
+    private static class InstanceHolder {
+        private static final DatabaseHelper INSTANCE = new DatabaseHelper();
+    }
 
     /**
      * A getter for the singleton class
      * @return An instance of DatabaseHelper class
      */
-    public static synchronized DatabaseHelper getInstance() {
-        if(instance == null){
-            instance = new DatabaseHelper();
-        }
-        return instance;
+    public static DatabaseHelper getInstance() {
+        return InstanceHolder.INSTANCE;
     }
 
     /**
@@ -100,9 +196,14 @@ public class DatabaseHelper {
         Logger logger = Logger.getLogger(DatabaseHelper.class.getName());
         try {
             //Connect to the database or create a new db file
-            String DB_PATH = "jdbc:sqlite:TicTacToe.db";
-            connection = DriverManager.getConnection(DB_PATH);
-            createTables();
+            writer = new CachedConnection(DriverManager.getConnection(DB_PATH));
+            try (Statement statement = writer.getConnection().createStatement()) {
+                statement.execute("PRAGMA busy_timeout = " + BUSY_TIMEOUT_MILLIS + ";");
+                statement.execute("PRAGMA journal_mode = WAL;"); // readers no longer wait for the writer
+                statement.execute("PRAGMA synchronous = NORMAL;"); // WAL stays consistent, only fsyncs on checkpoints
+            }
+            migrate();
+            loadAvailability();
             logger.log(Level.INFO, "Database Has Been Created");
         } catch (SQLException e) {
             logger.log(Level.SEVERE, "A SQL Exception Has Occurred", e);
@@ -112,24 +213,140 @@ public class DatabaseHelper {
 
     }
 
+    /**
+     * Sets the number of read connections
+     * @param readConnections Most reads running at the same time
+     */
+    public void setReadConnections(int readConnections) {
+        readers.setMaxSize(readConnections);
+    }
+
+    /**
+     * Sets the limits of the user and event caches
+     * @param cacheSize Most users, and most events, kept in memory, 0 to disable the caches
+     * @param cacheIdleMillis How long a cached user or event may stay unused, in milliseconds
+     */
+    public void setCacheLimits(int cacheSize, long cacheIdleMillis) {
+        if (cacheIdleMillis < 1) {
+            throw new IllegalArgumentException("Cache idle time must be positive");
+        }
+        this.cacheIdleMillis = cacheIdleMillis;
+        userCache.setMaxSize(cacheSize);
+        eventCache.setMaxSize(cacheSize);
+    }
+
+    /**
+     * Getter function for {@link #userCache} attribute, used to read its counters
+     * @return userCache
+     */
+    public RowCache<String, User> getUserCache() {
+        return userCache;
+    }
+
+    /**
+     * Getter function for {@link #eventCache} attribute, used to read its counters
+     * @return eventCache
+     */
+    public RowCache<Integer, Event> getEventCache() {
+        return eventCache;
+    }
+
+    /**
+     * Runs a read on a pooled read connection
+     * @param work The read to run
+     * @param <T> The type of the result of the read
+     * @return the result of the read
+     * @throws SQLException if database error occurs
+     */
+    private <T> T read(ConnectionWork<T> work) throws SQLException {
+        CachedConnection connection = readers.acquire();
+        try {
+            return work.run(connection);
+        } finally {
+            readers.release(connection);
+        }
+    }
+
+    /**
+     * Runs a write on the writer connection, waiting for the write using it to finish
+     * @param work The write to run
+     * @param <T> The type of the result of the write
+     * @return the result of the write
+     * @throws SQLException if database error occurs
+     */
+    private <T> T write(ConnectionWork<T> work) throws SQLException {
+        writerLock.lock();
+        try {
+            return work.run(writer);
+        } finally {
+            writerLock.unlock();
+        }
+    }
 
     /**
      * Truncate Database data
      */
     public void truncateTables() throws SQLException {
-        //Truncate User table
-        String sql  = "DELETE FROM " + TABLE_USER + ";";
-        connection.createStatement().executeUpdate(sql);
+        write(connection -> {
+            try (Statement statement = connection.getConnection().createStatement()) {
+                //Truncate User table
+                String sql  = "DELETE FROM " + TABLE_USER + ";";
+                statement.executeUpdate(sql);
+
+                //Truncate Event table
+                sql  = "DELETE FROM " + TABLE_EVENT + ";";
+                statement.executeUpdate(sql);
+            }
+            availability.clear();
+            userCache.clear();
+            eventCache.clear();
+            return null;
+        });
+    }
 
-        //Truncate Event table
-        sql  = "DELETE FROM " + TABLE_EVENT + ";";
-        connection.createStatement().executeUpdate(sql);
+    /**
+     * Upgrades the database to the latest schema, running the migrations it has not run yet
+     * The version of a database file is kept in its user_version, each migration is committed with the version it reaches
+     * @throws SQLException if database error occurs or the database comes from a newer server
+     */
+    private void migrate() throws SQLException {
+        Logger logger = Logger.getLogger(DatabaseHelper.class.getName());
+        write(connection -> {
+            Connection writerConnection = connection.getConnection();
+            try (Statement statement = writerConnection.createStatement()) {
+                int version;
+                try (ResultSet rs = statement.executeQuery("PRAGMA user_version;")) {
+                    version = rs.next() ? rs.getInt(1) : 0;
+                }
+                if (version > migrations.length) {
+                    throw new SQLException("Database schema version " + version + " is newer than " + migrations.length);
+                }
+                for (; version < migrations.length; version++) {
+                    writerConnection.setAutoCommit(false);
+                    try {
+                        migrations[version].run(statement);
+                        statement.execute("PRAGMA user_version = " + (version + 1) + ";");
+                        writerConnection.commit();
+                    } catch (SQLException e) {
+                        writerConnection.rollback();
+                        throw e;
+                    } finally {
+                        writerConnection.setAutoCommit(true);
+                    }
+                    logger.log(Level.INFO, "Database Migrated To Version " + (version + 1));
+                }
+            }
+            return null;
+        });
     }
 
     /**
-     * Create Database Tables if they do not already exist
+     * Migration to version 1: Create Database Tables if they do not already exist
+     * Databases created before migrations were introduced are at version 0 but already have these tables
+     * @param statement The statement to run the migration with
+     * @throws SQLException if database error occurs
      */
-    private void createTables() throws SQLException {
+    private void createTables(Statement statement) throws SQLException {
         //Creating User table
         String sql  = "CREATE TABLE IF NOT EXISTS " + TABLE_USER + " ("
                 + COL_USERNAME + " TEXT PRIMARY KEY, "
@@ -137,7 +354,7 @@ public class DatabaseHelper {
                 + COL_DISPLAY_NAME + " TEXT, "
                 + COL_ONLINE + " TEXT" +
                 ");";
-        connection.createStatement().executeUpdate(sql);
+        statement.executeUpdate(sql);
 
         //Creating Event table
         sql  = "CREATE TABLE IF NOT EXISTS " + TABLE_EVENT + " ("
@@ -150,7 +367,125 @@ public class DatabaseHelper {
                 + "FOREIGN KEY(" + COL_SENDER + ") REFERENCES " + TABLE_USER + "(" + COL_USERNAME + "),"
                 + "FOREIGN KEY(" + COL_OPPONENT + ") REFERENCES " + TABLE_USER + "(" + COL_USERNAME + ")"
                 +");";
-        connection.createStatement().executeUpdate(sql);
+        statement.executeUpdate(sql);
+    }
+
+    /**
+     * Migration to version 2: Stores {@link #COL_ONLINE} and {@link #COL_STATUS} as integers and indexes the lookups
+     * SQLite can not change the type of a column, so both tables are copied into new ones that replace them.
+     * The indexes serve the searches of a user's events by status and of the online users.
+     * The migration fails on an event status it does not know, and keeps the event id sequence
+     * @param statement The statement to run the migration with
+     * @throws SQLException if database error occurs
+     */
+    private void migrateToIntegerColumns(Statement statement) throws SQLException {
+        //Copying User table
+        String sql  = "CREATE TABLE " + TABLE_USER + "_v2 ("
+                + COL_USERNAME + " TEXT PRIMARY KEY, "
+                + COL_PASSWORD + " TEXT, "
+                + COL_DISPLAY_NAME + " TEXT, "
+                + COL_ONLINE + " INTEGER NOT NULL DEFAULT 0" +
+                ");";
+        statement.executeUpdate(sql);
+        sql = "INSERT INTO " + TABLE_USER + "_v2 SELECT "
+                + COL_USERNAME + ", " + COL_PASSWORD + ", " + COL_DISPLAY_NAME + ", "
+                + "CASE WHEN " + COL_ONLINE + " IN ('1', 'true') THEN 1 ELSE 0 END"
+                + " FROM " + TABLE_USER + ";";
+        statement.executeUpdate(sql);
+
+        //Copying Event table
+        sql  = "CREATE TABLE " + TABLE_EVENT + "_v2 ("
+                + COL_EVENT_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + COL_SENDER + " TEXT, "
+                + COL_OPPONENT + " TEXT, "
+                + COL_STATUS + " INTEGER, "
+                + COL_TURN + " TEXT, "
+                + COL_MOVE + " INTEGER, "
+                + "FOREIGN KEY(" + COL_SENDER + ") REFERENCES " + TABLE_USER + "(" + COL_USERNAME + "),"
+                + "FOREIGN KEY(" + COL_OPPONENT + ") REFERENCES " + TABLE_USER + "(" + COL_USERNAME + ")"
+                +");";
+        statement.executeUpdate(sql);
+        StringBuilder status = new StringBuilder("CASE " + COL_STATUS);
+        StringBuilder names = new StringBuilder();
+        for (Event.EventStatus eventStatus : Event.EventStatus.values()) {
+            status.append(" WHEN '").append(eventStatus.name()).append("' THEN ").append(statusCode(eventStatus));
+            names.append(names.length() == 0 ? "'" : ", '").append(eventStatus.name()).append("'");
+        }
+        status.append(" END");
+        // A status without code would be copied as NULL and read back as PENDING, the migration fails instead
+        sql = "SELECT " + COL_EVENT_ID + ", " + COL_STATUS + " FROM " + TABLE_EVENT
+                + " WHERE " + COL_STATUS + " IS NULL OR " + COL_STATUS + " NOT IN (" + names + ") LIMIT 1;";
+        try (ResultSet rs = statement.executeQuery(sql)) {
+            if (rs.next()) {
+                throw new SQLException("Unknown status " + rs.getString(2) + " of event " + rs.getInt(1));
+            }
+        }
+        sql = "INSERT INTO " + TABLE_EVENT + "_v2 SELECT "
+                + COL_EVENT_ID + ", " + COL_SENDER + ", " + COL_OPPONENT + ", " + status + ", " + COL_TURN + ", " + COL_MOVE
+                + " FROM " + TABLE_EVENT + ";";
+        statement.executeUpdate(sql);
+        // The copy only moves the sequence up to the largest id left, ids of deleted events must not be reused
+        Long sequence = null;
+        try (ResultSet rs = statement.executeQuery("SELECT seq FROM sqlite_sequence WHERE name = '" + TABLE_EVENT + "';")) {
+            if (rs.next()) {
+                sequence = rs.getLong(1);
+            }
+        }
+        if (sequence != null) {
+            statement.executeUpdate("DELETE FROM sqlite_sequence WHERE name = '" + TABLE_EVENT + "_v2';");
+            statement.executeUpdate("INSERT INTO sqlite_sequence (name, seq) VALUES ('" + TABLE_EVENT + "_v2', " + sequence + ");");
+        }
+
+        //Replacing the tables
+        statement.executeUpdate("DROP TABLE " + TABLE_EVENT + ";");
+        statement.executeUpdate("DROP TABLE " + TABLE_USER + ";");
+        statement.executeUpdate("ALTER TABLE " + TABLE_USER + "_v2 RENAME TO " + TABLE_USER + ";");
+        statement.executeUpdate("ALTER TABLE " + TABLE_EVENT + "_v2 RENAME TO " + TABLE_EVENT + ";");
+
+        //Creating indexes
+        statement.executeUpdate("CREATE INDEX idx_event_sender_status ON " + TABLE_EVENT + "(" + COL_SENDER + ", " + COL_STATUS + ");");
+        statement.executeUpdate("CREATE INDEX idx_event_opponent_status ON " + TABLE_EVENT + "(" + COL_OPPONENT + ", " + COL_STATUS + ");");
+        statement.executeUpdate("CREATE INDEX idx_user_online ON " + TABLE_USER + "(" + COL_ONLINE + ");");
+    }
+
+    /**
+     * Fills the {@link #availability} index with the online users and the events keeping users busy
+     * @throws SQLException if database error occurs
+     */
+    private void loadAvailability() throws SQLException {
+        write(connection -> {
+            List<User> onlineUsers = new ArrayList<>();
+            PreparedStatement statement = connection.prepare(
+                    "SELECT * FROM " + TABLE_USER
+                            + " WHERE " + COL_ONLINE + " = ?;"
+            );
+            statement.setBoolean(1, true);
+            try (ResultSet rs = statement.executeQuery()) {
+                while(rs.next()) {
+                    onlineUsers.add(new User(
+                            rs.getString(COL_USERNAME),
+                            "",//Hidden
+                            rs.getString(COL_DISPLAY_NAME),
+                            rs.getBoolean(COL_ONLINE)
+                    ));
+                }
+            }
+
+            List<Event> busyEvents = new ArrayList<>();
+            statement = connection.prepare(
+                    "SELECT * FROM " + TABLE_EVENT
+                            + " WHERE " + COL_STATUS + " IN (?,?);"
+            );
+            statement.setInt(1, statusCode(Event.EventStatus.PLAYING));
+            statement.setInt(2, statusCode(Event.EventStatus.ACCEPTED));
+            try (ResultSet rs = statement.executeQuery()) {
+                while(rs.next()) {
+                    busyEvents.add(mapEvent(rs));
+                }
+            }
+            availability.load(onlineUsers, busyEvents);
+            return null;
+        });
     }
 
     /**
@@ -160,14 +495,17 @@ public class DatabaseHelper {
      * @throws SQLException if database error occurs
      */
     public boolean isUsernameExists(String username) throws SQLException {
-        PreparedStatement statement = connection.prepareStatement("SELECT " + COL_USERNAME
-                + " FROM " + TABLE_USER
-                + " WHERE " + COL_USERNAME
-                + " = ?;");
-
-        statement.setString(1, username);
-        ResultSet rs = statement.executeQuery();
-        return rs.next();
+        return read(connection -> {
+            PreparedStatement statement = connection.prepare("SELECT " + COL_USERNAME
+                    + " FROM " + TABLE_USER
+                    + " WHERE " + COL_USERNAME
+                    + " = ?;");
+
+            statement.setString(1, username);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next();
+            }
+        });
     }
 
     /**
@@ -176,41 +514,59 @@ public class DatabaseHelper {
      * @throws SQLException if database error occurs
      */
     public void createUser(User user) throws SQLException {
-        PreparedStatement statement = connection.prepareStatement(
-                "INSERT INTO " + TABLE_USER +
-                        "(" + COL_USERNAME + "," + COL_PASSWORD + "," + COL_DISPLAY_NAME + "," + COL_ONLINE + ") " +
-                        "VALUES(?, ?, ?, ?);");
-        statement.setString(1, user.getUsername());
-        statement.setString(2, user.getPassword());
-        statement.setString(3, user.getDisplayName());
-        statement.setBoolean(4, user.isOnline());
-        statement.executeUpdate();
+        write(connection -> {
+            PreparedStatement statement = connection.prepare(
+                    "INSERT INTO " + TABLE_USER +
+                            "(" + COL_USERNAME + "," + COL_PASSWORD + "," + COL_DISPLAY_NAME + "," + COL_ONLINE + ") " +
+                            "VALUES(?, ?, ?, ?);");
+            statement.setString(1, user.getUsername());
+            statement.setString(2, user.getPassword());
+            statement.setString(3, user.getDisplayName());
+            statement.setBoolean(4, user.isOnline());
+            statement.executeUpdate();
+            availability.updateUser(user);
+            userCache.put(user.getUsername(), user);
+            return null;
+        });
     }
 
     /**
      * Gets the full user details given a username
+     * A user read or written recently is answered from the {@link #userCache}
      * @param username the username of the user
      * @return An object of {@link User} class
      * @throws SQLException if database error occurs
      */
     public User getUser(String username) throws SQLException {
-        PreparedStatement statement = connection.prepareStatement(
-                "SELECT * FROM " + TABLE_USER
-                        + " WHERE " + COL_USERNAME + " = ?;"
-        );
-
-        statement.setString(1, username);
-        ResultSet rs = statement.executeQuery();
-        if(rs.next()) {
-            return new User(
-                    rs.getString(COL_USERNAME),
-                    rs.getString(COL_PASSWORD),
-                    rs.getString(COL_DISPLAY_NAME),
-                    rs.getBoolean(COL_ONLINE)
+        User cached = userCache.get(username);
+        if (cached != null) {
+            return cached;
+        }
+        long stamp = userCache.stamp();
+        User user = read(connection -> {
+            PreparedStatement statement = connection.prepare(
+                    "SELECT * FROM " + TABLE_USER
+                            + " WHERE " + COL_USERNAME + " = ?;"
             );
-        }else{
-            return null;
+
+            statement.setString(1, username);
+            try (ResultSet rs = statement.executeQuery()) {
+                if(rs.next()) {
+                    return new User(
+                            rs.getString(COL_USERNAME),
+                            rs.getString(COL_PASSWORD),
+                            rs.getString(COL_DISPLAY_NAME),
+                            rs.getBoolean(COL_ONLINE)
+                    );
+                }else{
+                    return null;
+                }
+            }
+        });
+        if (user != null) {
+            userCache.fill(username, user, stamp);
         }
+        return user;
     }
 
     /**
@@ -219,18 +575,45 @@ public class DatabaseHelper {
      * @throws SQLException if database error occurs
      */
     public void updateUser(User user) throws SQLException {
-        PreparedStatement statement = connection.prepareStatement(
-                "UPDATE " + TABLE_USER + " SET "
-                        + COL_PASSWORD + " = ?, "
-                        + COL_DISPLAY_NAME + " = ?, "
-                        + COL_ONLINE + " = ? " +
-                        "WHERE " + COL_USERNAME +" = ?;"
-        );
-        statement.setString(1, user.getPassword());
-        statement.setString(2, user.getDisplayName());
-        statement.setBoolean(3, user.isOnline());
-        statement.setString(4, user.getUsername());
-        statement.executeUpdate();
+        write(connection -> {
+            PreparedStatement statement = connection.prepare(
+                    "UPDATE " + TABLE_USER + " SET "
+                            + COL_PASSWORD + " = ?, "
+                            + COL_DISPLAY_NAME + " = ?, "
+                            + COL_ONLINE + " = ? " +
+                            "WHERE " + COL_USERNAME +" = ?;"
+            );
+            statement.setString(1, user.getPassword());
+            statement.setString(2, user.getDisplayName());
+            statement.setBoolean(3, user.isOnline());
+            statement.setString(4, user.getUsername());
+            if (statement.executeUpdate() > 0) {
+                availability.updateUser(user);
+                userCache.put(user.getUsername(), user);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Sets every user offline in a single statement, used when the server shuts down
+     * @return the number of users that were online
+     * @throws SQLException if database error occurs
+     */
+    public int setAllUsersOffline() throws SQLException {
+        return write(connection -> {
+            PreparedStatement statement = connection.prepare(
+                    "UPDATE " + TABLE_USER + " SET "
+                            + COL_ONLINE + " = ? " +
+                            "WHERE " + COL_ONLINE + " = ?;"
+            );
+            statement.setBoolean(1, false);
+            statement.setBoolean(2, true);
+            int offline = statement.executeUpdate();
+            availability.setAllUsersOffline();
+            userCache.clear();
+            return offline;
+        });
     }
 
     /**
@@ -239,38 +622,12 @@ public class DatabaseHelper {
      * 2. Users that do not have an {@link Event} with status:
      *  - {@link Event.EventStatus#PLAYING}
      *  - {@link Event.EventStatus#ACCEPTED}
+     * The users are read from the {@link AvailabilityIndex} kept in memory, in the order of their usernames
      * @param username the username of the user looking for available users
      * @return a list of {@link User}
-     * @throws SQLException if database error occurs
      */
-    public List<User> getAvailableUsers(String username) throws SQLException {
-        PreparedStatement statement = connection.prepareStatement(
-                "SELECT * FROM " + TABLE_USER
-                        + " WHERE " + COL_USERNAME + " != ?"
-                        + " AND " + COL_ONLINE + " = ?"
-                        + " AND (SELECT COUNT() FROM " + TABLE_EVENT
-                        + " WHERE (" + COL_OPPONENT + " = " + COL_USERNAME
-                        + " OR " + COL_SENDER + " = "+ COL_USERNAME + ") "
-                        + " AND " + COL_STATUS + " IN (?,?)"
-                        + ") = ?;"
-        );
-
-        statement.setString(1, username);
-        statement.setBoolean(2, true);
-        statement.setString(3, Event.EventStatus.PLAYING.name());
-        statement.setString(4, Event.EventStatus.ACCEPTED.name());
-        statement.setInt(5, 0);
-        ResultSet rs = statement.executeQuery();
-        List<User> users = new ArrayList<>();
-        while(rs.next()) {
-            users.add(new User(
-                    rs.getString(COL_USERNAME),
-                    "",//Hidden
-                    rs.getString(COL_DISPLAY_NAME),
-                    rs.getBoolean(COL_ONLINE)
-            ));
-        }
-        return users;
+    public List<User> getAvailableUsers(String username) {
+        return availability.getAvailableUsers(username);
     }
 
     /**
@@ -280,21 +637,9 @@ public class DatabaseHelper {
      *  - {@link Event.EventStatus#ACCEPTED}
      * @param username the username of the user to check for availability
      * @return true if user is available, otherwise false
-     * @throws SQLException if database error occurs
      */
-    public boolean isUserAvailable(String username) throws SQLException {
-        PreparedStatement statement = connection.prepareStatement(
-                "SELECT * FROM " + TABLE_EVENT
-                        + " WHERE (" + COL_OPPONENT + " = ? OR " + COL_SENDER + " = ?) "
-                        + " AND " + COL_STATUS + " IN (?,?);"
-        );
-
-        statement.setString(1, username);
-        statement.setString(2, username);
-        statement.setString(3, Event.EventStatus.PLAYING.name());
-        statement.setString(4, Event.EventStatus.ACCEPTED.name());
-        ResultSet rs = statement.executeQuery();
-        return !rs.next();
+    public boolean isUserAvailable(String username) {
+        return availability.isUserAvailable(username);
     }
 
     /**
@@ -303,44 +648,54 @@ public class DatabaseHelper {
      * @throws SQLException if database error occurs
      */
     public void createEvent(Event event) throws SQLException {
-        PreparedStatement statement = connection.prepareStatement(("INSERT INTO " + TABLE_EVENT
-                + "(" + COL_SENDER + "," + COL_OPPONENT + ","
-                +  COL_STATUS + "," +  COL_TURN + "," +  COL_MOVE + ") " +
-                "VALUES(?, ?, ?, ?, ?);"));
-        statement.setString(1, event.getSender());
-        statement.setString(2, event.getOpponent());
-        statement.setString(3, event.getStatus().name());
-        statement.setString(4, event.getTurn());
-        statement.setInt(5, event.getMove());
-        statement.executeUpdate();
+        write(connection -> {
+            PreparedStatement statement = connection.prepare(("INSERT INTO " + TABLE_EVENT
+                    + "(" + COL_SENDER + "," + COL_OPPONENT + ","
+                    +  COL_STATUS + "," +  COL_TURN + "," +  COL_MOVE + ") " +
+                    "VALUES(?, ?, ?, ?, ?);"));
+            statement.setString(1, event.getSender());
+            statement.setString(2, event.getOpponent());
+            statement.setInt(3, statusCode(event.getStatus()));
+            statement.setString(4, event.getTurn());
+            statement.setInt(5, event.getMove());
+            statement.executeUpdate();
+            if (AvailabilityIndex.isBusy(event.getStatus())) {
+                try (ResultSet rs = connection.prepare("SELECT last_insert_rowid();").executeQuery()) {
+                    rs.next();
+                    availability.updateEvent(new Event(rs.getInt(1), event.getSender(), event.getOpponent(),
+                            event.getStatus(), event.getTurn(), event.getMove()));
+                }
+            }
+            return null;
+        });
     }
 
     /**
      * Gets a event given a eventId
+     * An event read or written recently is answered from the {@link #eventCache}
      * @param eventId The eventId of the event
      * @return and object of {@link Event} class
      * @throws SQLException if database error occurs
      */
     public Event getEvent(int eventId) throws SQLException {
-        PreparedStatement statement = connection.prepareStatement(
-                "SELECT * FROM " + TABLE_EVENT
-                        + " WHERE " + COL_EVENT_ID + " = ?;"
-        );
-
-        statement.setInt(1, eventId);
-        ResultSet rs = statement.executeQuery();
-        if(rs.next()) {
-            return new Event(
-                    rs.getInt(COL_EVENT_ID),
-                    rs.getString(COL_SENDER),
-                    rs.getString(COL_OPPONENT),
-                    Event.EventStatus.valueOf(rs.getString(COL_STATUS)),
-                    rs.getString(COL_TURN),
-                    rs.getInt(COL_MOVE)
+        Event cached = eventCache.get(eventId);
+        if (cached != null) {
+            return cached;
+        }
+        long stamp = eventCache.stamp();
+        Event event = read(connection -> {
+            PreparedStatement statement = connection.prepare(
+                    "SELECT * FROM " + TABLE_EVENT
+                            + " WHERE " + COL_EVENT_ID + " = ?;"
             );
-        }else{
-            return null;
+
+            statement.setInt(1, eventId);
+            return readEvent(statement);
+        });
+        if (event != null) {
+            eventCache.fill(eventId, event, stamp);
         }
+        return event;
     }
 
     /**
@@ -349,18 +704,62 @@ public class DatabaseHelper {
      * @throws SQLException if database error occurs
      */
     public void updateEvent(Event event) throws SQLException {
-        PreparedStatement statement = connection.prepareStatement(
-                "UPDATE " + TABLE_EVENT + " SET "
-                        + COL_STATUS + " = ?, "
-                        + COL_TURN + " = ?, "
-                        + COL_MOVE + " = ? " +
-                        "WHERE " + COL_EVENT_ID +" = ?;"
-        );
-        statement.setString(1, event.getStatus().name());
-        statement.setString(2, event.getTurn());
-        statement.setInt(3, event.getMove());
-        statement.setInt(4, event.getEventId());
-        statement.executeUpdate();
+        write(connection -> {
+            PreparedStatement statement = connection.prepare(
+                    "UPDATE " + TABLE_EVENT + " SET "
+                            + COL_STATUS + " = ?, "
+                            + COL_TURN + " = ?, "
+                            + COL_MOVE + " = ? " +
+                            "WHERE " + COL_EVENT_ID +" = ?;"
+            );
+            statement.setInt(1, statusCode(event.getStatus()));
+            statement.setString(2, event.getTurn());
+            statement.setInt(3, event.getMove());
+            statement.setInt(4, event.getEventId());
+            if (statement.executeUpdate() > 0) {
+                availability.updateEvent(event);
+                eventCache.put(event.getEventId(), event);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Takes the move made by the opponent of a user so it is delivered once
+     * The move is only reset if it is still the one read, so two requests never both get it
+     * and a move sent meanwhile is kept
+     * @param eventId The eventId of the game
+     * @param username The username of the user receiving the move
+     * @return the move, -1 if there is no move to deliver
+     * @throws SQLException if database error occurs
+     */
+    public int consumeMove(int eventId, String username) throws SQLException {
+        Event event = getEvent(eventId);
+        if (event == null || event.getMove() == -1 || event.getTurn() == null || event.getTurn().equals(username)) {
+            return -1;
+        }
+        return write(connection -> {
+            PreparedStatement statement = connection.prepare(
+                    "UPDATE " + TABLE_EVENT + " SET "
+                            + COL_TURN + " = NULL, "
+                            + COL_MOVE + " = -1 " +
+                            "WHERE " + COL_EVENT_ID + " = ?"
+                            + " AND " + COL_TURN + " = ?"
+                            + " AND " + COL_MOVE + " = ?;"
+            );
+            statement.setInt(1, eventId);
+            statement.setString(2, event.getTurn());
+            statement.setInt(3, event.getMove());
+            if (statement.executeUpdate() != 1) {
+                eventCache.removeIf(cached -> cached.getEventId() == eventId); // changed meanwhile, read it again next time
+                return -1;
+            }
+            int move = event.getMove();
+            event.setTurn(null);
+            event.setMove(-1);
+            eventCache.put(eventId, event);
+            return move;
+        });
     }
 
     /**
@@ -374,21 +773,26 @@ public class DatabaseHelper {
      * @throws SQLException if database error occurs
      */
     public void abortAllUserEvents(String username) throws SQLException {
-        PreparedStatement statement = connection.prepareStatement(
-                "UPDATE " + TABLE_EVENT +
-                        " SET " + COL_STATUS + " = ?" +
-                        " WHERE (" + COL_SENDER +" = ?" +
-                        " OR " + COL_OPPONENT +" = ?)" +
-                        " AND " + COL_STATUS + " IN (?,?,?,?);"
-        );
-        statement.setString(1, Event.EventStatus.ABORTED.name());
-        statement.setString(2, username);
-        statement.setString(3, username);
-        statement.setString(4, Event.EventStatus.PENDING.name());
-        statement.setString(5, Event.EventStatus.ACCEPTED.name());
-        statement.setString(6, Event.EventStatus.DECLINED.name());
-        statement.setString(7, Event.EventStatus.PLAYING.name());
-        statement.executeUpdate();
+        write(connection -> {
+            PreparedStatement statement = connection.prepare(
+                    "UPDATE " + TABLE_EVENT +
+                            " SET " + COL_STATUS + " = ?" +
+                            " WHERE (" + COL_SENDER +" = ?" +
+                            " OR " + COL_OPPONENT +" = ?)" +
+                            " AND " + COL_STATUS + " IN (?,?,?,?);"
+            );
+            statement.setInt(1, statusCode(Event.EventStatus.ABORTED));
+            statement.setString(2, username);
+            statement.setString(3, username);
+            statement.setInt(4, statusCode(Event.EventStatus.PENDING));
+            statement.setInt(5, statusCode(Event.EventStatus.ACCEPTED));
+            statement.setInt(6, statusCode(Event.EventStatus.DECLINED));
+            statement.setInt(7, statusCode(Event.EventStatus.PLAYING));
+            statement.executeUpdate();
+            availability.abortAllUserEvents(username);
+            eventCache.removeIf(event -> username.equals(event.getSender()) || username.equals(event.getOpponent()));
+            return null;
+        });
     }
 
     /**
@@ -398,26 +802,17 @@ public class DatabaseHelper {
      * @throws SQLException if database error occurs
      */
     public Event getUserInvitation(String username) throws SQLException {
-        PreparedStatement statement = connection.prepareStatement(
-                "SELECT * FROM " + TABLE_EVENT
-                        + " WHERE " + COL_OPPONENT + " = ?"
-                        + " AND " + COL_STATUS + " = ?;"
-        );
-
-        statement.setString(1, username);
-        statement.setString(2, Event.EventStatus.PENDING.name());
-        ResultSet rs = statement.executeQuery();
-        if(rs.next()) {
-            return new Event(
-                    rs.getInt(COL_EVENT_ID),
-                    rs.getString(COL_SENDER),
-                    rs.getString(COL_OPPONENT),
-                    Event.EventStatus.valueOf(rs.getString(COL_STATUS)),
-                    rs.getString(COL_TURN),
-                    rs.getInt(COL_MOVE)
+        return read(connection -> {
+            PreparedStatement statement = connection.prepare(
+                    "SELECT * FROM " + TABLE_EVENT
+                            + " WHERE " + COL_OPPONENT + " = ?"
+                            + " AND " + COL_STATUS + " = ?;"
             );
-        }
-        return null;
+
+            statement.setString(1, username);
+            statement.setInt(2, statusCode(Event.EventStatus.PENDING));
+            return readEvent(statement);
+        });
     }
 
     /**
@@ -427,27 +822,96 @@ public class DatabaseHelper {
      * @throws SQLException if database error occurs
      */
     public Event getUserInvitationResponse(String username) throws SQLException {
-        PreparedStatement statement = connection.prepareStatement(
-                "SELECT * FROM " + TABLE_EVENT
-                        + " WHERE " + COL_SENDER + " = ?"
-                        + " AND " + COL_STATUS + " IN (?,?);"
+        return read(connection -> {
+            PreparedStatement statement = connection.prepare(
+                    "SELECT * FROM " + TABLE_EVENT
+                            + " WHERE " + COL_SENDER + " = ?"
+                            + " AND " + COL_STATUS + " IN (?,?);"
+            );
+
+            statement.setString(1, username);
+            statement.setInt(2, statusCode(Event.EventStatus.ACCEPTED));
+            statement.setInt(3, statusCode(Event.EventStatus.DECLINED));
+            return readEvent(statement);
+        });
+    }
+
+    /**
+     * Runs a query on the {@link #TABLE_EVENT} table and maps its first row
+     * @param statement The query, with its parameters set
+     * @return the event of the first row, null if there is none
+     * @throws SQLException if database error occurs
+     */
+    private Event readEvent(PreparedStatement statement) throws SQLException {
+        try (ResultSet rs = statement.executeQuery()) {
+            return rs.next() ? mapEvent(rs) : null;
+        }
+    }
+
+    /**
+     * Maps the current row of a result set of the {@link #TABLE_EVENT} table
+     * @param rs The result set, positioned on a row
+     * @return the event of the row
+     * @throws SQLException if database error occurs
+     */
+    private Event mapEvent(ResultSet rs) throws SQLException {
+        return new Event(
+                rs.getInt(COL_EVENT_ID),
+                rs.getString(COL_SENDER),
+                rs.getString(COL_OPPONENT),
+                statusOf(rs.getInt(COL_STATUS)),
+                rs.getString(COL_TURN),
+                rs.getInt(COL_MOVE)
         );
+    }
 
-        statement.setString(1, username);
-        statement.setString(2, Event.EventStatus.ACCEPTED.name());
-        statement.setString(3, Event.EventStatus.DECLINED.name());
-        ResultSet rs = statement.executeQuery();
-        if(rs.next()) {
-            return new Event(
-                    rs.getInt(COL_EVENT_ID),
-                    rs.getString(COL_SENDER),
-                    rs.getString(COL_OPPONENT),
-                    Event.EventStatus.valueOf(rs.getString(COL_STATUS)),
-                    rs.getString(COL_TURN),
-                    rs.getInt(COL_MOVE)
-            );
+    /**
+     * Gets the code stored in {@link #COL_STATUS} for an event status
+     * The codes are part of the schema and must not change, unlike the order of {@link Event.EventStatus}
+     * @param status The event status
+     * @return the code of the status
+     */
+    private static int statusCode(Event.EventStatus status) {
+        switch (status) {
+            case PENDING:
+                return 0;
+            case DECLINED:
+                return 1;
+            case ACCEPTED:
+                return 2;
+            case PLAYING:
+                return 3;
+            case COMPLETED:
+                return 4;
+            case ABORTED:
+                return 5;
+            default:
+                throw new IllegalArgumentException("Unknown event status " + status);
         }
-        return null;
     }
-}
 
+    /**
+     * Gets the event status stored in {@link #COL_STATUS}
+     * @param code The code of the status
+     * @return the event status
+     * @throws SQLException if the code is unknown
+     */
+    private static Event.EventStatus statusOf(int code) throws SQLException {
+        switch (code) {
+            case 0:
+                return Event.EventStatus.PENDING;
+            case 1:
+                return Event.EventStatus.DECLINED;
+            case 2:
+                return Event.EventStatus.ACCEPTED;
+            case 3:
+                return Event.EventStatus.PLAYING;
+            case 4:
+                return Event.EventStatus.COMPLETED;
+            case 5:
+                return Event.EventStatus.ABORTED;
+            default:
+                throw new SQLException("Unknown event status code " + code);
+        }
+    }
+}
@@ -0,0 +1,466 @@
+package server;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import socket.BinaryCodec;
+import socket.JsonCodec;
+import socket.Request;
+import socket.Response;
+import socket.WireProtocol;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * Reads and writes the frames of one client connection in the {@link WireProtocol} negotiated by the client
+ * Used by both the stream based sessions and the {@link NioConnection}s
+ * Clients of the int32 framed protocols can also ask for compressed responses: large bodies are then raw deflate
+ * data, flushed per frame, and flagged by the high bit of the length prefix
+ */
+public class FrameCodec {
+
+    /**
+     * Largest frame body accepted in the negotiated protocols
+     */
+    private static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * Largest request body accepted before the client has logged in
+     */
+    private static final int MAX_LOGIN_FRAME_SIZE = 64 * 1024;
+
+    /**
+     * Largest buffer kept for reuse between frames, larger buffers are dropped once the frame is handled
+     */
+    private static final int MAX_POOLED_SIZE = 256 * 1024;
+
+    /**
+     * Suffix of a protocol name in the HELLO request asking for compressed responses, e.g. json/2+deflate
+     */
+    public static final String DEFLATE_SUFFIX = "+deflate";
+
+    /**
+     * Set in the length prefix of a frame whose body is compressed
+     */
+    private static final int COMPRESSED_FLAG = 0x80000000;
+
+    /**
+     * Written in place of the length prefix until the size of the body is known
+     */
+    private static final byte[] HEADER_PLACEHOLDER = new byte[4];
+
+    /**
+     * Smallest response body compressed, smaller bodies (e.g. a move) cost more CPU than they save bandwidth
+     */
+    private static volatile int compressionThreshold = 1024;
+
+    /**
+     * Used to serialize/deserialize objects in {@link WireProtocol#JSON}
+     */
+    private final Gson gson;
+
+    /**
+     * The protocol of the frames, starts as {@link WireProtocol#JSON}
+     */
+    private volatile WireProtocol protocol;
+
+    /**
+     * If the client has logged in, larger request bodies are only accepted from then on
+     */
+    private volatile boolean loggedIn;
+
+    /**
+     * Reused to read request bodies, only used by the reading thread of the connection
+     */
+    private FrameBuffer readBuffer;
+
+    /**
+     * Reused to write response frames, only used while holding the write lock of the session
+     */
+    private FrameBuffer writeBuffer;
+
+    /**
+     * Reused to write compressed response frames, only used while holding the write lock of the session
+     */
+    private FrameBuffer compressBuffer;
+
+    /**
+     * Compression context of the connection, null unless the client negotiated compression
+     * Only used while holding the write lock of the session
+     */
+    private Deflater deflater;
+
+    /**
+     * Default constructor
+     */
+    public FrameCodec() {
+        this.gson = JsonCodec.getGson();
+        this.protocol = WireProtocol.JSON;
+        this.readBuffer = new FrameBuffer();
+        this.writeBuffer = new FrameBuffer();
+        this.compressBuffer = new FrameBuffer();
+    }
+
+    /**
+     * Sets the smallest response body compressed by the connections that negotiated compression
+     * @param threshold The size in bytes
+     */
+    public static void setCompressionThreshold(int threshold) {
+        compressionThreshold = threshold;
+    }
+
+    /**
+     * Checks a protocol name sent in a HELLO request
+     * @param protocolName The protocol name, optionally with {@link #DEFLATE_SUFFIX}
+     * @return true if the codec can switch to it
+     */
+    public static boolean isSupported(String protocolName) {
+        if (protocolName == null) {
+            return false;
+        }
+        if (protocolName.endsWith(DEFLATE_SUFFIX)) {
+            WireProtocol protocol = WireProtocol.fromProtocolName(protocolName.substring(0, protocolName.length() - DEFLATE_SUFFIX.length()));
+            return protocol != null && protocol != WireProtocol.JSON; // the 16-bit prefix of json/1 has no room for the flag
+        }
+        return WireProtocol.fromProtocolName(protocolName) != null;
+    }
+
+    /**
+     * Getter function for {@link #protocol} attribute
+     * @return protocol
+     */
+    public WireProtocol getProtocol() {
+        return protocol;
+    }
+
+    /**
+     * Switches the protocol, used once the response to the HELLO request has been written
+     * Must be called while holding the write lock of the session
+     * @param protocolName A protocol name accepted by {@link #isSupported(String)}
+     */
+    public void negotiate(String protocolName) {
+        boolean compression = protocolName.endsWith(DEFLATE_SUFFIX);
+        if (compression) {
+            protocolName = protocolName.substring(0, protocolName.length() - DEFLATE_SUFFIX.length());
+        }
+        if (compression && deflater == null) {
+            deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        } else if (!compression && deflater != null) {
+            deflater.end();
+            deflater = null;
+        }
+        this.protocol = WireProtocol.fromProtocolName(protocolName);
+    }
+
+    /**
+     * Raises the size of the request bodies accepted, used once the client has logged in
+     * @param loggedIn If the client has logged in
+     */
+    public void setLoggedIn(boolean loggedIn) {
+        this.loggedIn = loggedIn;
+    }
+
+    /**
+     * Gets the size of the length prefix of a frame
+     * @return 2 in {@link WireProtocol#JSON}, otherwise 4
+     */
+    public int headerSize() {
+        return protocol == WireProtocol.JSON ? 2 : 4;
+    }
+
+    /**
+     * Gets the size of the frame starting at the position of a buffer, the buffer must hold the whole header
+     * @param buffer The buffer holding the frame
+     * @return the size of the frame, header included
+     * @throws ProtocolException When the frame is larger than allowed
+     */
+    public int frameSize(ByteBuffer buffer) throws ProtocolException {
+        if (protocol == WireProtocol.JSON) {
+            return 2 + (buffer.getShort(buffer.position()) & 0xFFFF);
+        }
+        return 4 + checkRequestSize(buffer.getInt(buffer.position()));
+    }
+
+    /**
+     * Reads the next request from a stream (blocking operation)
+     * @param inputStream The stream of the client connection
+     * @return the request, null if the frame holds no request
+     * @throws IOException When the frame can not be read or decoded
+     */
+    public Request readRequest(DataInputStream inputStream) throws IOException {
+        if (protocol == WireProtocol.JSON) {
+            return gson.fromJson(inputStream.readUTF(), Request.class);
+        }
+        int size = checkRequestSize(inputStream.readInt());
+        readBuffer.reset();
+        readBuffer.readFrom(inputStream, size);
+        try {
+            if (protocol == WireProtocol.BINARY) {
+                return BinaryCodec.decodeRequest(readBuffer.buffer(), 0, size);
+            }
+            return readJson(readBuffer.buffer(), 0, size);
+        } finally {
+            readBuffer = readBuffer.recycle();
+        }
+    }
+
+    /**
+     * Decodes a request from a whole frame
+     * @param frame The frame, header included
+     * @return the request, null if the frame holds no request
+     * @throws IOException When the frame can not be decoded
+     */
+    public Request decodeRequest(byte[] frame) throws IOException {
+        if (protocol == WireProtocol.JSON_STREAM) {
+            return readJson(frame, 4, frame.length - 4);
+        }
+        return readRequest(new DataInputStream(new ByteArrayInputStream(frame)));
+    }
+
+    /**
+     * Encodes a response into a whole frame
+     * Can be called from any thread
+     * @param response The response to encode
+     * @return the frame, header included. A constant response gives its shared frame, which must not be modified
+     * @throws IOException When the response can not be encoded
+     */
+    public byte[] encodeResponse(Response response) throws IOException {
+        byte[] constant = ConstantResponses.frame(response, protocol);
+        if (constant != null && (deflater == null || constant.length - headerSize() < compressionThreshold)) {
+            if (deflater != null) {
+                ServerMetrics.getInstance().recordSkippedCompression();
+            }
+            return constant;
+        }
+        return encode(response);
+    }
+
+    /**
+     * Encodes a response in a protocol without compression, used to pre-encode the {@link ConstantResponses}
+     * @param response The response to encode
+     * @param protocol The protocol of the frame
+     * @return the frame, header included
+     * @throws IOException When the response can not be encoded
+     */
+    static byte[] encodeUncompressed(Response response, WireProtocol protocol) throws IOException {
+        FrameCodec codec = new FrameCodec();
+        codec.protocol = protocol;
+        return codec.encode(response);
+    }
+
+    /**
+     * Serializes a response into a whole frame
+     * @param response The response to encode
+     * @return the frame, header included
+     * @throws IOException When the response can not be encoded
+     */
+    private byte[] encode(Response response) throws IOException {
+        if (protocol == WireProtocol.JSON) {
+            String serializedResponse = gson.toJson(response);
+            ByteArrayOutputStream frame = new ByteArrayOutputStream(2 + serializedResponse.length());
+            new DataOutputStream(frame).writeUTF(serializedResponse);
+            return frame.toByteArray();
+        }
+        try {
+            return encodeFrame(response).toByteArray();
+        } finally {
+            recycleWriteBuffers();
+        }
+    }
+
+    /**
+     * Releases the resources of the codec once the connection is closed
+     * Must be called while holding the write lock of the session
+     */
+    public void close() {
+        if (deflater != null) {
+            deflater.end();
+            deflater = null;
+        }
+    }
+
+    /**
+     * Streams a JSON request body into a request
+     * @param body The buffer holding the body
+     * @param offset The offset of the body in the buffer
+     * @param length The length of the body
+     * @return the request, null if the body holds no request
+     */
+    private Request readJson(byte[] body, int offset, int length) {
+        JsonReader reader = gson.newJsonReader(new InputStreamReader(new ByteArrayInputStream(body, offset, length), StandardCharsets.UTF_8));
+        return gson.fromJson(reader, Request.class);
+    }
+
+    /**
+     * Encodes a response as a whole int32 framed frame, compressed when negotiated and large enough
+     * @param response The response to encode
+     * @return the buffer holding the frame
+     * @throws IOException When the response can not be encoded
+     */
+    private FrameBuffer encodeFrame(Response response) throws IOException {
+        writeBuffer.reset();
+        writeBuffer.write(HEADER_PLACEHOLDER); // set once the body is written
+        if (protocol == WireProtocol.JSON_STREAM) {
+            JsonWriter writer = gson.newJsonWriter(new OutputStreamWriter(writeBuffer, StandardCharsets.UTF_8));
+            gson.toJson(response, response.getClass(), writer);
+            writer.flush();
+        } else {
+            writeBuffer.write(BinaryCodec.encodeResponse(response));
+        }
+        int size = checkBodySize(writeBuffer.size() - 4, MAX_FRAME_SIZE);
+        if (deflater == null) {
+            writeBuffer.setLength(size);
+            return writeBuffer;
+        }
+        if (size < compressionThreshold) {
+            ServerMetrics.getInstance().recordSkippedCompression();
+            writeBuffer.setLength(size);
+            return writeBuffer;
+        }
+        return compress(writeBuffer, size);
+    }
+
+    /**
+     * Compresses the body of a frame into {@link #compressBuffer}
+     * The deflater is flushed after every frame but keeps its dictionary, so repeated content across frames compresses too
+     * @param frame The uncompressed frame
+     * @param size The size of the uncompressed body
+     * @return the buffer holding the compressed frame
+     * @throws IOException When the compressed body is larger than allowed
+     */
+    private FrameBuffer compress(FrameBuffer frame, int size) throws IOException {
+        long start = System.nanoTime();
+        deflater.setInput(frame.buffer(), 4, size);
+        compressBuffer.reset();
+        compressBuffer.write(HEADER_PLACEHOLDER);
+        compressBuffer.deflateFrom(deflater);
+        int compressedSize = checkBodySize(compressBuffer.size() - 4, MAX_FRAME_SIZE);
+        compressBuffer.setLength(compressedSize | COMPRESSED_FLAG);
+        ServerMetrics.getInstance().recordCompression(size, compressedSize, System.nanoTime() - start);
+        return compressBuffer;
+    }
+
+    /**
+     * Drops the write buffers that grew too large to keep
+     */
+    private void recycleWriteBuffers() {
+        writeBuffer = writeBuffer.recycle();
+        compressBuffer = compressBuffer.recycle();
+    }
+
+    /**
+     * Checks the body size read from the header of a request frame
+     * @param size The body size
+     * @return the body size
+     * @throws ProtocolException When the size is negative or larger than allowed for the client
+     */
+    private int checkRequestSize(int size) throws ProtocolException {
+        return checkBodySize(size, loggedIn ? MAX_FRAME_SIZE : MAX_LOGIN_FRAME_SIZE);
+    }
+
+    /**
+     * Checks the body size of a frame
+     * @param size The body size
+     * @param maxSize The largest body size allowed
+     * @return the body size
+     * @throws ProtocolException When the size is negative or larger than allowed
+     */
+    private int checkBodySize(int size, int maxSize) throws ProtocolException {
+        if (size < 0 || size > maxSize) {
+            throw new ProtocolException("Invalid frame size: " + size);
+        }
+        return size;
+    }
+
+    /**
+     * A growable byte buffer reused between frames
+     * Exposes its internal array so frames can be read and written without extra copies
+     */
+    private static class FrameBuffer extends ByteArrayOutputStream {
+
+        /**
+         * Default constructor
+         */
+        FrameBuffer() {
+            super(1024);
+        }
+
+        /**
+         * Gets the internal array, valid until the next write
+         * @return the internal array
+         */
+        byte[] buffer() {
+            return buf;
+        }
+
+        /**
+         * Reads bytes from a stream straight into the buffer
+         * The buffer doubles as the bytes arrive, a header announcing a large body allocates nothing by itself
+         * @param inputStream The stream to read from
+         * @param length The number of bytes to read
+         * @throws IOException When the bytes can not be read
+         */
+        void readFrom(DataInputStream inputStream, int length) throws IOException {
+            int end = count + length;
+            while (count < end) {
+                if (count == buf.length) {
+                    buf = Arrays.copyOf(buf, Math.min(end, buf.length * 2));
+                }
+                int read = inputStream.read(buf, count, Math.min(end, buf.length) - count);
+                if (read == -1) {
+                    throw new EOFException();
+                }
+                count += read;
+            }
+        }
+
+        /**
+         * Appends the pending output of a deflater, flushed so the peer can inflate the frame on its own
+         * @param deflater The deflater holding the input
+         */
+        void deflateFrom(Deflater deflater) {
+            while (true) {
+                if (buf.length - count < 64) {
+                    buf = Arrays.copyOf(buf, buf.length * 2);
+                }
+                int space = buf.length - count;
+                int written = deflater.deflate(buf, count, space, Deflater.SYNC_FLUSH);
+                count += written;
+                if (written < space) { // the output did not fill the buffer, so the flush is complete
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Sets the 32-bit length prefix at the start of the buffer
+         * @param length The length of the body, with {@link #COMPRESSED_FLAG} for compressed bodies
+         */
+        void setLength(int length) {
+            buf[0] = (byte) (length >>> 24);
+            buf[1] = (byte) (length >>> 16);
+            buf[2] = (byte) (length >>> 8);
+            buf[3] = (byte) length;
+        }
+
+        /**
+         * Gets the buffer to use for the next frame
+         * @return this buffer, or a new one if this one grew too large to keep
+         */
+        FrameBuffer recycle() {
+            return buf.length > MAX_POOLED_SIZE ? new FrameBuffer() : this;
+        }
+    }
+}
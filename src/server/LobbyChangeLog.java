@@ -0,0 +1,194 @@
+package server;
+
+import model.User;
+import socket.PairingResponse;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded log of the changes of the lobby's available users, used to answer UPDATE_PAIRING with only what changed
+ * Every change of the lobby increments the version. A client sends the version it has and gets the users added,
+ * updated and removed since then; a version older than the oldest change kept needs a full snapshot instead
+ */
+public class LobbyChangeLog {
+
+    /**
+     * The available users at the current version, by username
+     */
+    private final Map<String, User> available;
+
+    /**
+     * The changes kept, oldest first
+     */
+    private final Deque<Change> changes;
+
+    /**
+     * Maximum number of changes kept
+     */
+    private final int capacity;
+
+    /**
+     * The current version of the lobby
+     */
+    private long version;
+
+    /**
+     * Oldest version a delta can be computed from, changes made after older versions were dropped
+     */
+    private long oldestVersion;
+
+    /**
+     * Guards every attribute
+     */
+    private final ReentrantLock lock;
+
+    /**
+     * Default constructor
+     * @param capacity Maximum number of changes kept
+     */
+    public LobbyChangeLog(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.available = new HashMap<>();
+        this.changes = new ArrayDeque<>();
+        this.capacity = capacity;
+        this.lock = new ReentrantLock();
+    }
+
+    /**
+     * Records the available users, the version is incremented if they changed
+     * @param availableUsers Every available user
+     * @return the version the available users correspond to
+     */
+    public long update(List<User> availableUsers) {
+        Map<String, User> next = new LinkedHashMap<>();
+        for (User user : availableUsers) {
+            next.put(user.getUsername(), user);
+        }
+        lock.lock();
+        try {
+            List<Change> found = new ArrayList<>();
+            for (User user : next.values()) {
+                User previous = available.get(user.getUsername());
+                if (previous == null || !Objects.equals(previous.getDisplayName(), user.getDisplayName())) {
+                    found.add(new Change(0, user.getUsername(), user));
+                }
+            }
+            for (String username : available.keySet()) {
+                if (!next.containsKey(username)) {
+                    found.add(new Change(0, username, null));
+                }
+            }
+            if (found.isEmpty()) {
+                return version;
+            }
+            version++;
+            for (Change change : found) {
+                change.version = version;
+                changes.addLast(change);
+            }
+            while (changes.size() > capacity) {
+                oldestVersion = changes.removeFirst().version; // a client at this version may have missed the dropped change
+            }
+            available.clear();
+            available.putAll(next);
+            return version;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Getter function for {@link #version} attribute
+     * @return version
+     */
+    public long getVersion() {
+        lock.lock();
+        try {
+            return version;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Fills a pairing update with the changes since a version
+     * @param response The update to fill, its lobby version is set to the current version
+     * @param since The version the client has
+     * @param username The user the update is for, left out of the changes
+     * @return true if the update was filled, false if the version is too old or unknown and a full snapshot is needed
+     */
+    public boolean fillDelta(PairingResponse response, long since, String username) {
+        lock.lock();
+        try {
+            if (since < oldestVersion || since > version) {
+                return false;
+            }
+            Map<String, User> upserted = new LinkedHashMap<>();
+            Set<String> removed = new LinkedHashSet<>();
+            for (Change change : changes) {
+                if (change.version <= since || change.username.equals(username)) {
+                    continue;
+                }
+                if (change.user != null) {
+                    upserted.put(change.username, change.user);
+                    removed.remove(change.username);
+                } else {
+                    upserted.remove(change.username);
+                    removed.add(change.username);
+                }
+            }
+            response.setDelta(true);
+            response.setLobbyVersion(version);
+            response.setAvailableUsers(new ArrayList<>(upserted.values()));
+            response.setRemovedUsers(new ArrayList<>(removed));
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * A user becoming available, updated, or no longer available
+     */
+    private static class Change {
+
+        /**
+         * Version of the lobby after the change
+         */
+        long version;
+
+        /**
+         * Username of the user that changed
+         */
+        final String username;
+
+        /**
+         * The user as it is after the change, null if it is no longer available
+         */
+        final User user;
+
+        /**
+         * Default constructor
+         * @param version Version of the lobby after the change
+         * @param username Username of the user that changed
+         * @param user The user as it is after the change, null if it is no longer available
+         */
+        Change(long version, String username, User user) {
+            this.version = version;
+            this.username = username;
+            this.user = user;
+        }
+    }
+}
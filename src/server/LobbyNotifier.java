@@ -0,0 +1,453 @@
+package server;
+
+import model.Event;
+import model.User;
+import socket.PairingResponse;
+import socket.Response;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Pushes lobby updates to the sessions subscribed with {@link socket.Request.RequestType#SUBSCRIBE_PAIRING}
+ * Updates are only sent when the lobby changes: a user comes online or goes offline, becomes busy or available,
+ * or an invitation is sent, accepted or declined.
+ * Updates are built and sent on a single notifier thread, so the session that caused a change never waits for the
+ * fan-out and the updates reach every subscriber in the order of the changes.
+ * Every change of the available users is also recorded in a {@link LobbyChangeLog} on that thread, so polling clients
+ * can ask for the changes since their version. Pushed updates are full snapshots since a newer update replaces an unsent one.
+ * Polling clients share one snapshot of the available users, read at most once per tick or when the lobby changes
+ */
+public class LobbyNotifier {
+
+    /**
+     * Coalescing key of the lobby updates, only the latest unsent update of a session is kept
+     */
+    private static final String LOBBY_KEY = "lobby";
+
+    /**
+     * Number of lobby changes kept to answer UPDATE_PAIRING with a delta
+     */
+    private static final int CHANGE_LOG_CAPACITY = 1024;
+
+    /**
+     * How long a lobby snapshot is shared by polling clients before it is read again, in milliseconds
+     */
+    private static volatile long snapshotMillis = 1000;
+
+    /**
+     * Lazily creates the only class instance when first accessed
+     */
+    private static class InstanceHolder {
+        private static final LobbyNotifier INSTANCE = new LobbyNotifier();
+    }
+
+    /**
+     * Used for printing logs of different levels
+     */
+    private final Logger LOGGER;
+
+    /**
+     * Sessions subscribed to lobby updates
+     */
+    private final Set<ServerHandler> subscribers;
+
+    /**
+     * The update last sent to each subscriber, its invitations are reused while the subscriber is not involved in a change
+     */
+    private final Map<ServerHandler, PairingResponse> lastUpdates;
+
+    /**
+     * Runs the fan-out of the updates, one change at a time
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Versions the available users, every lobby change goes through {@link #notifyAllSubscribers(String...)}
+     */
+    private final LobbyChangeLog changeLog;
+
+    /**
+     * The latest lobby snapshot, replaced whenever the lobby changes or the snapshot gets too old
+     */
+    private volatile Snapshot snapshot;
+
+    /**
+     * The snapshot being read by a polling client, the others wait for it instead of reading their own
+     */
+    private final AtomicReference<CompletableFuture<Snapshot>> inFlight;
+
+    /**
+     * Incremented by {@link #invalidate()}, a read that overlaps an invalidation is not kept as the snapshot
+     */
+    private final AtomicLong generation;
+
+    /**
+     * Serializes the lobby reads so the users read last are recorded last
+     */
+    private final ReentrantLock refreshLock;
+
+    /**
+     * A getter for the singleton class
+     * @return An instance of LobbyNotifier class
+     */
+    public static LobbyNotifier getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    /**
+     * A private constructor
+     */
+    private LobbyNotifier() {
+        LOGGER = Logger.getLogger(LobbyNotifier.class.getName());
+        subscribers = ConcurrentHashMap.newKeySet();
+        lastUpdates = new ConcurrentHashMap<>();
+        executor = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "lobby-notifier");
+            thread.setDaemon(true);
+            return thread;
+        });
+        changeLog = new LobbyChangeLog(CHANGE_LOG_CAPACITY);
+        inFlight = new AtomicReference<>();
+        generation = new AtomicLong();
+        refreshLock = new ReentrantLock();
+    }
+
+    /**
+     * Sets how long a lobby snapshot is shared by polling clients
+     * @param millis The time in milliseconds, 0 to read it again on every poll that does not join a read in flight
+     */
+    public static void setSnapshotMillis(long millis) {
+        snapshotMillis = millis;
+    }
+
+    /**
+     * Subscribes a session to lobby updates
+     * @param session The session of a logged in user
+     */
+    public void subscribe(ServerHandler session) {
+        subscribers.add(session);
+    }
+
+    /**
+     * Stops sending lobby updates to a session
+     * @param session The session to unsubscribe
+     */
+    public void unsubscribe(ServerHandler session) {
+        subscribers.remove(session);
+        lastUpdates.remove(session);
+    }
+
+    /**
+     * Checks if a session is subscribed to lobby updates
+     * @param session The session
+     * @return true if lobby updates are pushed to the session
+     */
+    public boolean isSubscribed(ServerHandler session) {
+        return subscribers.contains(session);
+    }
+
+    /**
+     * Creates the lobby update of a user, with the full list of available users
+     * @param username The username of the user
+     * @param availableUsers The users available to play, the user itself is left out of the update
+     * @param lobbyVersion The version of the lobby the available users correspond to
+     * @return pairing update with available players, invitation, and invitation response
+     * @throws SQLException When database error occurs
+     */
+    public PairingResponse createUpdate(String username, List<User> availableUsers, long lobbyVersion) throws SQLException {
+        List<User> others = others(username, availableUsers);
+        //Checking for user's invitation
+        Event invitation = DatabaseHelper.getInstance().getUserInvitation(username);
+        //Checking for user's response to invitation
+        Event invitationResponse = DatabaseHelper.getInstance().getUserInvitationResponse(username);
+
+        PairingResponse response = new PairingResponse(Response.ResponseStatus.SUCCESS, "Update", others, invitation, invitationResponse);
+        response.setLobbyVersion(lobbyVersion);
+        return response;
+    }
+
+    /**
+     * Creates the lobby update of a user that already has a version of the lobby
+     * Only the users added, updated or removed since that version are sent, or a full snapshot if the version is too old
+     * @param username The username of the user
+     * @param since The version of the lobby the user has
+     * @return pairing update with the changed players, invitation, and invitation response
+     * @throws SQLException When database error occurs
+     */
+    public PairingResponse createUpdateSince(String username, long since) throws SQLException {
+        PairingResponse response = new PairingResponse(Response.ResponseStatus.SUCCESS, "Update", null,
+                DatabaseHelper.getInstance().getUserInvitation(username),
+                DatabaseHelper.getInstance().getUserInvitationResponse(username));
+        if (!changeLog.fillDelta(response, since, username)) {
+            return createUpdate(username);
+        }
+        if (response.getAvailableUsers().isEmpty() && response.getRemovedUsers().isEmpty()) {
+            response.setMessage("Unchanged");
+        }
+        return response;
+    }
+
+    /**
+     * Creates the lobby update of a user from the shared lobby snapshot
+     * Only the parts specific to the user are computed: the user is left out and its invitations are read
+     * @param username The username of the user
+     * @return pairing update with available players, invitation, and invitation response
+     * @throws SQLException When database error occurs
+     */
+    public PairingResponse createUpdate(String username) throws SQLException {
+        Snapshot current = getSnapshot();
+        return createUpdate(username, current.users, current.version);
+    }
+
+    /**
+     * Gets the lobby snapshot, read again once it is older than {@link #snapshotMillis}
+     * A single read runs at a time, polling clients arriving meanwhile wait for its result
+     * @return the snapshot
+     * @throws SQLException When database error occurs
+     */
+    private Snapshot getSnapshot() throws SQLException {
+        Snapshot current = snapshot;
+        if (current != null && System.currentTimeMillis() - current.createdAt < snapshotMillis) {
+            return current;
+        }
+        CompletableFuture<Snapshot> read = new CompletableFuture<>();
+        CompletableFuture<Snapshot> running = inFlight.compareAndExchange(null, read);
+        if (running != null) {
+            return await(running);
+        }
+        try {
+            Snapshot built = refresh();
+            read.complete(built);
+            return built;
+        } catch (SQLException | RuntimeException e) {
+            read.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.set(null);
+        }
+    }
+
+    /**
+     * Waits for the snapshot read by another client
+     * @param running The read in flight
+     * @return the snapshot
+     * @throws SQLException When the read failed
+     */
+    private Snapshot await(CompletableFuture<Snapshot> running) throws SQLException {
+        try {
+            return running.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException("Unable to read the lobby", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while reading the lobby", e);
+        }
+    }
+
+    /**
+     * Reads the available users, records them in the change log and keeps them as the latest snapshot
+     * @return the new snapshot
+     * @throws SQLException When database error occurs
+     */
+    private Snapshot refresh() throws SQLException {
+        refreshLock.lock();
+        try {
+            long readGeneration = generation.get();
+            List<User> availableUsers = Collections.unmodifiableList(DatabaseHelper.getInstance().getAvailableUsers(""));
+            Snapshot built = new Snapshot(availableUsers, changeLog.update(availableUsers), System.currentTimeMillis());
+            if (generation.get() == readGeneration) {
+                snapshot = built; // a change written during the read must not be hidden behind a cached snapshot
+            }
+            return built;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Drops the lobby snapshot, used before a change is written so polling clients stop reading the old one
+     * A read running meanwhile is not cached. {@link #notifyAllSubscribers(String...)} must follow once the change
+     * is written, it drops the snapshot again and reads the new one
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        snapshot = null;
+    }
+
+    /**
+     * Leaves a user out of the available users
+     * @param username The username of the user
+     * @param availableUsers The users available to play
+     * @return the other available users
+     */
+    private static List<User> others(String username, List<User> availableUsers) {
+        List<User> others = new ArrayList<>(availableUsers.size());
+        for (User user : availableUsers) {
+            if (!user.getUsername().equals(username)) {
+                others.add(user);
+            }
+        }
+        return others;
+    }
+
+    /**
+     * Pushes an update to every subscriber, used when the list of available users changes
+     * The snapshot is dropped right away, so polls made after the change read it again. The available users are then
+     * read once, recorded in the change log even when nobody is subscribed, and shared by all updates and by polling
+     * clients; the invitations are only read again for the subscribers involved in the change
+     * @param usernames The users whose invitations may have changed
+     */
+    public void notifyAllSubscribers(String... usernames) {
+        List<String> involved = Arrays.asList(usernames);
+        invalidate();
+        executor.execute(() -> {
+            forget(involved);
+            try {
+                Snapshot current = refresh();
+                for (ServerHandler session : subscribers) {
+                    push(session, current.users, current.version);
+                }
+            } catch (SQLException e) {
+                LOGGER.log(Level.SEVERE, "Server Info: Database Error", e);
+            }
+        });
+    }
+
+    /**
+     * Pushes an update to a single user if subscribed, used when only the user's invitations change
+     * @param username The username of the user
+     */
+    public void notifyUser(String username) {
+        executor.execute(() -> {
+            forget(List.of(username));
+            ServerHandler session = SessionRegistry.getInstance().getSession(username);
+            if (session == null || !subscribers.contains(session)) {
+                return;
+            }
+            try {
+                Snapshot current = getSnapshot();
+                push(session, current.users, current.version);
+            } catch (SQLException e) {
+                LOGGER.log(Level.SEVERE, "Server Info: Database Error", e);
+            }
+        });
+    }
+
+    /**
+     * Records that invitations of users changed without pushing anything, their next updates read them again
+     * @param usernames The users whose invitations changed
+     */
+    public void invitationsChanged(String... usernames) {
+        List<String> involved = Arrays.asList(usernames);
+        executor.execute(() -> forget(involved));
+    }
+
+    /**
+     * Drops the last updates of the subscribers involved in a change: the given users and the users their last
+     * invitations came from or went to. Only called on the notifier thread, after the updates queued before the change
+     * @param involved The users whose invitations may have changed
+     */
+    private void forget(Collection<String> involved) {
+        lastUpdates.entrySet().removeIf(entry -> involved.contains(entry.getKey().currentUsername)
+                || concerns(entry.getValue().getInvitation(), involved)
+                || concerns(entry.getValue().getInvitationResponse(), involved));
+    }
+
+    /**
+     * Sends the lobby update of a subscriber, the invitations of its last update are reused if it was not involved
+     * in a change since
+     * @param session The subscribed session
+     * @param availableUsers The users available to play
+     * @param lobbyVersion The version of the lobby the available users correspond to
+     * @throws SQLException When database error occurs
+     */
+    private void push(ServerHandler session, List<User> availableUsers, long lobbyVersion) throws SQLException {
+        String username = session.currentUsername;
+        if (username == null) {
+            return;
+        }
+        PairingResponse last = lastUpdates.get(session);
+        PairingResponse update;
+        if (last == null) {
+            update = createUpdate(username, availableUsers, lobbyVersion);
+        } else {
+            update = new PairingResponse(Response.ResponseStatus.SUCCESS, "Update", others(username, availableUsers),
+                    last.getInvitation(), last.getInvitationResponse());
+            update.setLobbyVersion(lobbyVersion);
+        }
+        lastUpdates.put(session, update);
+        if (!subscribers.contains(session)) {
+            lastUpdates.remove(session); // unsubscribed meanwhile
+            return;
+        }
+        try {
+            session.sendResponse(update, LOBBY_KEY); // a newer update replaces an unsent one
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Server Info: Unable to push lobby update to " + username, e);
+        }
+    }
+
+    /**
+     * Checks if an invitation was sent by or to one of the given users
+     * @param event The invitation, or null
+     * @param usernames The users
+     * @return true if one of the users is the sender or the opponent
+     */
+    private static boolean concerns(Event event, Collection<String> usernames) {
+        return event != null && (usernames.contains(event.getSender()) || usernames.contains(event.getOpponent()));
+    }
+
+    /**
+     * The available users at one version of the lobby, shared by every update built from it and never modified
+     */
+    private static class Snapshot {
+
+        /**
+         * Every available user
+         */
+        final List<User> users;
+
+        /**
+         * The version of the lobby the users correspond to
+         */
+        final long version;
+
+        /**
+         * Time the users were read, in milliseconds
+         */
+        final long createdAt;
+
+        /**
+         * Default constructor
+         * @param users Every available user
+         * @param version The version of the lobby the users correspond to
+         * @param createdAt Time the users were read, in milliseconds
+         */
+        Snapshot(List<User> users, long version, long createdAt) {
+            this.users = users;
+            this.version = version;
+            this.createdAt = createdAt;
+        }
+    }
+}
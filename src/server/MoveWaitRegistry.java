@@ -0,0 +1,266 @@
+package server;
+
+import socket.GamingResponse;
+import socket.Response;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Parks long-polling {@link socket.Request.RequestType#REQUEST_MOVE} requests until the game changes
+ * A parked request is only a callback registered per event, no thread is blocked while it waits.
+ * It is answered when the opponent's move arrives, the game ends, or its maximum wait expires
+ */
+public class MoveWaitRegistry {
+
+    /**
+     * Upper limit of the wait a client can ask for, in milliseconds
+     */
+    public static final int MAX_WAIT_MILLIS = 60_000;
+
+    /**
+     * Lazily creates the only class instance when first accessed
+     */
+    private static class InstanceHolder {
+        private static final MoveWaitRegistry INSTANCE = new MoveWaitRegistry();
+    }
+
+    /**
+     * Used for printing logs of different levels
+     */
+    private final Logger LOGGER;
+
+    /**
+     * Parked requests by event id
+     */
+    private final Map<Integer, Set<MoveWaiter>> waiters;
+
+    /**
+     * Single timer thread answering the requests whose wait expired
+     */
+    private final ScheduledThreadPoolExecutor timer;
+
+    /**
+     * A getter for the singleton class
+     * @return An instance of MoveWaitRegistry class
+     */
+    public static MoveWaitRegistry getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    /**
+     * A private constructor
+     */
+    private MoveWaitRegistry() {
+        LOGGER = Logger.getLogger(MoveWaitRegistry.class.getName());
+        waiters = new ConcurrentHashMap<>();
+        timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "move-wait-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Parks a move request of a session
+     * The request must then be tried once with {@link MoveWaiter#poll()} in case the move already arrived
+     * @param eventId The event id of the game
+     * @param session The session waiting for the move
+     * @param maxWaitMillis How long to wait before answering with no move, capped to {@link #MAX_WAIT_MILLIS}
+     * @param requestId The identifier of the request, echoed on the response
+     * @return the parked request
+     */
+    MoveWaiter register(int eventId, ServerHandler session, int maxWaitMillis, Integer requestId) {
+        MoveWaiter waiter = new MoveWaiter(eventId, session, requestId);
+        waiters.computeIfAbsent(eventId, id -> ConcurrentHashMap.newKeySet()).add(waiter);
+        waiter.timeout = timer.schedule(waiter::expire, Math.min(maxWaitMillis, MAX_WAIT_MILLIS), TimeUnit.MILLISECONDS);
+        return waiter;
+    }
+
+    /**
+     * Wakes the requests parked on a game, called after a move is saved or the game ends
+     * @param eventId The event id of the game
+     */
+    void signal(int eventId) {
+        Set<MoveWaiter> eventWaiters = waiters.get(eventId);
+        if (eventWaiters == null) {
+            return;
+        }
+        for (MoveWaiter waiter : eventWaiters) {
+            waiter.wake();
+        }
+    }
+
+    /**
+     * Drops a parked request without answering it, e.g. when its session closes
+     * @param waiter The parked request
+     */
+    void cancel(MoveWaiter waiter) {
+        waiter.lock.lock();
+        try {
+            waiter.finish();
+        } finally {
+            waiter.lock.unlock();
+        }
+    }
+
+    /**
+     * Removes a request from the registry
+     * @param waiter The request to remove
+     */
+    private void remove(MoveWaiter waiter) {
+        waiters.computeIfPresent(waiter.eventId, (id, eventWaiters) -> {
+            eventWaiters.remove(waiter);
+            return eventWaiters.isEmpty() ? null : eventWaiters;
+        });
+    }
+
+    /**
+     * A parked move request
+     * Every attempt to answer it runs under {@link #lock} so a move is read from the game only by the attempt that answers it
+     */
+    class MoveWaiter {
+
+        /**
+         * The event id of the game
+         */
+        private final int eventId;
+
+        /**
+         * The session waiting for the move
+         */
+        private final ServerHandler session;
+
+        /**
+         * The identifier of the request, echoed on the response
+         */
+        private final Integer requestId;
+
+        /**
+         * Serializes the attempts to answer the request
+         */
+        private final ReentrantLock lock;
+
+        /**
+         * If the request has been answered or cancelled
+         */
+        private boolean done;
+
+        /**
+         * The scheduled expiry of the request
+         */
+        private ScheduledFuture<?> timeout;
+
+        /**
+         * Constructor
+         * @param eventId The event id of the game
+         * @param session The session waiting for the move
+         * @param requestId The identifier of the request, echoed on the response
+         */
+        private MoveWaiter(int eventId, ServerHandler session, Integer requestId) {
+            this.eventId = eventId;
+            this.session = session;
+            this.requestId = requestId;
+            this.lock = new ReentrantLock();
+        }
+
+        /**
+         * Answers the request right away if there is something to report
+         * @return the response to send, or null if the request stays parked
+         * @throws SQLException When database error occurs
+         */
+        GamingResponse poll() throws SQLException {
+            lock.lock();
+            try {
+                if (done) {
+                    return null;
+                }
+                GamingResponse response = session.handleRequestMove();
+                if (isReady(response)) {
+                    finish();
+                    return response;
+                }
+                return null;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Answers the request if the game changed, otherwise keeps it parked
+         */
+        private void wake() {
+            lock.lock();
+            try {
+                if (done) {
+                    return;
+                }
+                GamingResponse response = session.handleRequestMove();
+                if (isReady(response)) {
+                    finish();
+                    session.sendResponse(ConstantResponses.withRequestId(response, requestId));
+                }
+            } catch (SQLException e) {
+                LOGGER.log(Level.SEVERE, "Server Info: Database Error", e);
+            } catch (IOException e) {
+                LOGGER.log(Level.SEVERE, "Server Info: Client Connection Failed", e);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Answers the request with the current state of the game once its wait expired
+         */
+        private void expire() {
+            lock.lock();
+            try {
+                if (done) {
+                    return;
+                }
+                finish();
+                GamingResponse response = session.handleRequestMove();
+                session.sendResponse(ConstantResponses.withRequestId(response, requestId));
+            } catch (SQLException e) {
+                LOGGER.log(Level.SEVERE, "Server Info: Database Error", e);
+            } catch (IOException e) {
+                LOGGER.log(Level.SEVERE, "Server Info: Client Connection Failed", e);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Marks the request as answered and removes it from the registry, must hold {@link #lock}
+         */
+        private void finish() {
+            if (done) {
+                return;
+            }
+            done = true;
+            remove(this);
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+        }
+
+        /**
+         * Checks if a move response has something to report
+         * @param response The move response
+         * @return true if it failed, the game is over, or it carries a move
+         */
+        private boolean isReady(GamingResponse response) {
+            return response.getStatus() == Response.ResponseStatus.FAILURE || !response.isActive() || response.getMove() != -1;
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package server;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A non-blocking client connection owned by a {@link NioEventLoop}
+ * Frames are split and decoded with the {@link FrameCodec} of the session, in the protocol negotiated by the client.
+ * While a worker thread handles the frames of the connection, the event loop stops reading from it,
+ * so requests of a connection run one at a time and in order, and a client sending too fast is slowed down by TCP
+ */
+public class NioConnection {
+
+    /**
+     * Most queued responses handed to a single gathering write
+     */
+    private static final int MAX_WRITE_BATCH = 16;
+
+    /**
+     * Initial size of the read buffer, grows up to the largest frame received
+     */
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+
+    /**
+     * Used for printing logs of different levels
+     */
+    private final Logger LOGGER;
+
+    /**
+     * Channel of the client connection
+     */
+    private final SocketChannel channel;
+
+    /**
+     * Registration of the channel with the event loop's selector
+     */
+    private final SelectionKey key;
+
+    /**
+     * Event loop that owns this connection
+     */
+    private final NioEventLoop eventLoop;
+
+    /**
+     * Session logic of the client
+     */
+    private final ServerHandler handler;
+
+    /**
+     * If the connection is already waiting for its event loop to flush it
+     */
+    private final AtomicBoolean flushScheduled;
+
+    /**
+     * Bytes received but not yet decoded into a full frame
+     */
+    private ByteBuffer readBuffer;
+
+    /**
+     * If the channel has been closed
+     */
+    private volatile boolean closed;
+
+    /**
+     * If reading is paused while a worker thread handles the frames of the connection, only used by the event loop
+     */
+    private boolean readPaused;
+
+    /**
+     * If the socket buffer was full on the last write, only used by the event loop
+     */
+    private boolean writeBlocked;
+
+    /**
+     * Constructor, called by the event loop when it registers the channel
+     * @param channel Channel of the client connection
+     * @param key Registration of the channel with the event loop's selector
+     * @param eventLoop Event loop that owns this connection
+     */
+    NioConnection(SocketChannel channel, SelectionKey key, NioEventLoop eventLoop) {
+        LOGGER = Logger.getLogger(NioConnection.class.getName());
+        this.channel = channel;
+        this.key = key;
+        this.eventLoop = eventLoop;
+        this.flushScheduled = new AtomicBoolean();
+        this.readBuffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        this.handler = new ServerHandler(this);
+    }
+
+    /**
+     * Gets the address of the client
+     * @return the remote address, or null when it is no longer known
+     */
+    public SocketAddress getRemoteAddress() {
+        try {
+            return channel.getRemoteAddress();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Called by the event loop when the channel has data to read
+     * Reads what is available and hands every complete frame to the worker pool
+     */
+    void onReadable() {
+        try {
+            int read = channel.read(readBuffer);
+            if (read == -1) {
+                LOGGER.log(Level.INFO, "Server Info: Client Disconnected: " + handler.currentUsername + " - " + getRemoteAddress());
+                handler.closeSocket();
+                return;
+            }
+            ExecutorService requestExecutor = eventLoop.getRequestExecutor();
+            if (requestExecutor == null) {
+                decodeFrames();
+                return;
+            }
+            readPaused = true; // the worker owns the read buffer until it resumes reading
+            updateInterest();
+            try {
+                requestExecutor.execute(this::handleFrames);
+            } catch (RejectedExecutionException e) {
+                readPaused = false;
+                updateInterest();
+                rejectFrames();
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Server Info: Client Connection Failed", e);
+            handler.closeSocket();
+        }
+    }
+
+    /**
+     * Runs on a worker thread, handles every complete frame then lets the event loop read again
+     */
+    private void handleFrames() {
+        try {
+            decodeFrames();
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Server Info: Client Connection Failed", e);
+            handler.closeSocket();
+        } finally {
+            eventLoop.execute(this::resumeReading);
+        }
+    }
+
+    /**
+     * Called by the event loop once a worker thread handled the frames of the connection
+     */
+    private void resumeReading() {
+        readPaused = false;
+        updateInterest();
+    }
+
+    /**
+     * Answers every complete frame with "Server Busy" without running it, used when the worker queue is full
+     * @throws IOException When a frame header is invalid
+     */
+    private void rejectFrames() throws IOException {
+        FrameCodec codec = handler.getCodec();
+        readBuffer.flip();
+        while (!closed && readBuffer.remaining() >= codec.headerSize()) {
+            int frameSize = codec.frameSize(readBuffer);
+            if (readBuffer.remaining() < frameSize) {
+                break;
+            }
+            byte[] frame = new byte[frameSize];
+            readBuffer.get(frame);
+            handler.rejectFrame(frame);
+        }
+        readBuffer.compact();
+        growReadBuffer(codec);
+    }
+
+    /**
+     * Handles every complete frame in the read buffer and keeps the trailing partial frame
+     * @throws IOException When a frame can not be decoded
+     */
+    private void decodeFrames() throws IOException {
+        FrameCodec codec = handler.getCodec(); // the protocol may change after any frame, e.g. a HELLO request
+        readBuffer.flip();
+        try {
+            while (!closed && readBuffer.remaining() >= codec.headerSize()) {
+                int frameSize = codec.frameSize(readBuffer);
+                if (readBuffer.remaining() < frameSize) {
+                    break;
+                }
+                byte[] frame = new byte[frameSize];
+                readBuffer.get(frame);
+                handler.handleFrame(frame);
+            }
+        } finally {
+            readBuffer.compact(); // frames handled are dropped even if one failed, so they are never decoded again
+        }
+        growReadBuffer(codec);
+    }
+
+    /**
+     * Grows the read buffer when it is full and the pending partial frame does not fit
+     * The buffer doubles as the bytes arrive, so a header announcing a large body allocates nothing by itself
+     * @param codec The codec of the session
+     * @throws IOException When the frame header is invalid
+     */
+    private void growReadBuffer(FrameCodec codec) throws IOException {
+        if (!readBuffer.hasRemaining() && readBuffer.position() >= codec.headerSize()) {
+            int frameSize = codec.frameSize(readBuffer.duplicate().position(0));
+            if (frameSize > readBuffer.capacity()) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.min(frameSize, readBuffer.capacity() * 2));
+                readBuffer.flip();
+                larger.put(readBuffer);
+                readBuffer = larger;
+            }
+        }
+    }
+
+    /**
+     * Asks the event loop to write the outbound queue of the session, can be called from any thread
+     * The event loop writes it after handling the current batch of ready channels,
+     * so responses to pipelined requests leave in a single gathering write
+     */
+    void scheduleFlush() {
+        if (closed) {
+            return;
+        }
+        if (flushScheduled.compareAndSet(false, true)) {
+            eventLoop.requestFlush(this);
+        }
+    }
+
+    /**
+     * Writes as much of the queued responses as the channel accepts
+     * Registers interest in writability when the socket buffer is full
+     */
+    void flush() {
+        flushScheduled.set(false);
+        if (closed) {
+            return;
+        }
+        OutboundQueue outbound = handler.getOutbound();
+        try {
+            ByteBuffer[] batch = new ByteBuffer[MAX_WRITE_BATCH];
+            int size;
+            while ((size = outbound.peek(batch)) > 0) {
+                channel.write(batch, 0, size);
+                boolean blocked = batch[size - 1].hasRemaining();
+                outbound.removeWritten();
+                if (blocked) {
+                    writeBlocked = true;
+                    updateInterest();
+                    return;
+                }
+            }
+            writeBlocked = false;
+            updateInterest();
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Server Info: Client Connection Failed", e);
+            handler.closeSocket();
+        }
+    }
+
+    /**
+     * Sets the readiness the selector watches for, only called by the event loop
+     */
+    private void updateInterest() {
+        if (key.isValid()) {
+            key.interestOps((readPaused ? 0 : SelectionKey.OP_READ) | (writeBlocked ? SelectionKey.OP_WRITE : 0));
+        }
+    }
+
+    /**
+     * Closes the channel and drops all queued responses
+     */
+    void closeChannel() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        handler.getOutbound().clear();
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Server Info: Unable to close socket", e);
+        }
+    }
+}
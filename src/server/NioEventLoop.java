@@ -0,0 +1,199 @@
+package server;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A selector thread used in {@link ServerMode#NIO}
+ * Each event loop owns a share of the client connections, reads their frames,
+ * hands the requests to the worker pool (or runs them itself when there is none) and writes the responses back without blocking
+ */
+public class NioEventLoop extends Thread {
+
+    /**
+     * Used for printing logs of different levels
+     */
+    private final Logger LOGGER;
+
+    /**
+     * Selector multiplexing all channels of this event loop
+     */
+    private final Selector selector;
+
+    /**
+     * Channels handed over by the acceptor, registered on the next loop iteration
+     */
+    private final Queue<SocketChannel> pendingChannels;
+
+    /**
+     * Connections with queued responses waiting to be written
+     */
+    private final Queue<NioConnection> pendingFlushes;
+
+    /**
+     * Tasks handed over by other threads, run on the next loop iteration
+     */
+    private final Queue<Runnable> pendingTasks;
+
+    /**
+     * Bounded pool running the requests, null to run them on the event loop
+     */
+    private final ExecutorService requestExecutor;
+
+    /**
+     * Constructor that opens the selector of the event loop
+     * @param index The index of the event loop, used in the thread name
+     * @param requestExecutor Bounded pool running the requests, null to run them on the event loop
+     * @throws IOException When the selector can not be opened
+     */
+    public NioEventLoop(int index, ExecutorService requestExecutor) throws IOException {
+        super("nio-event-loop-" + index);
+        LOGGER = Logger.getLogger(NioEventLoop.class.getName());
+        selector = Selector.open();
+        pendingChannels = new ConcurrentLinkedQueue<>();
+        pendingFlushes = new ConcurrentLinkedQueue<>();
+        pendingTasks = new ConcurrentLinkedQueue<>();
+        this.requestExecutor = requestExecutor;
+    }
+
+    /**
+     * Getter function for {@link #requestExecutor} attribute
+     * @return requestExecutor
+     */
+    ExecutorService getRequestExecutor() {
+        return requestExecutor;
+    }
+
+    /**
+     * Runs a task on the event loop, can be called from any thread
+     * @param task The task to run
+     */
+    void execute(Runnable task) {
+        pendingTasks.add(task);
+        if (!inEventLoop()) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Hands a newly accepted channel to this event loop, can be called from any thread
+     * @param channel The accepted client channel
+     */
+    public void register(SocketChannel channel) {
+        pendingChannels.add(channel);
+        selector.wakeup();
+    }
+
+    /**
+     * Asks the event loop to write the queued responses of a connection, can be called from any thread
+     * @param connection The connection to flush
+     */
+    void requestFlush(NioConnection connection) {
+        pendingFlushes.add(connection);
+        if (!inEventLoop()) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Stops the event loop once its current iteration is done, its selector is then closed
+     */
+    void shutdown() {
+        interrupt();
+        selector.wakeup();
+    }
+
+    /**
+     * Checks if the caller is running on this event loop
+     * @return true if the current thread is this event loop
+     */
+    boolean inEventLoop() {
+        return Thread.currentThread() == this;
+    }
+
+    /**
+     * Runs immediately after the thread is started
+     * Waits for channel readiness and dispatches it to the owning {@link NioConnection}
+     */
+    @Override
+    public void run() {
+        while (!isInterrupted()) {
+            try {
+                selector.select();
+                registerPendingChannels();
+                runPendingTasks();
+                flushPendingConnections();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    NioConnection connection = (NioConnection) key.attachment();
+                    if (key.isValid() && key.isReadable()) {
+                        connection.onReadable();
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        connection.flush();
+                    }
+                }
+                flushPendingConnections();
+            } catch (IOException e) {
+                LOGGER.log(Level.SEVERE, "Server Error: Event Loop Failed", e);
+            } catch (Exception e) {
+                LOGGER.log(Level.SEVERE, "Server Error: Unknown Exception Occurred", e);
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Server Error: Unable to Close Selector", e);
+        }
+    }
+
+    /**
+     * Registers the channels handed over since the last loop iteration
+     */
+    private void registerPendingChannels() {
+        SocketChannel channel;
+        while ((channel = pendingChannels.poll()) != null) {
+            try {
+                channel.configureBlocking(false);
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                key.attach(new NioConnection(channel, key, this));
+            } catch (ClosedChannelException e) {
+                LOGGER.log(Level.INFO, "Server Info: Client Disconnected Before Registration");
+            } catch (IOException e) {
+                LOGGER.log(Level.SEVERE, "Server Error: Client Registration Failed", e);
+            }
+        }
+    }
+
+    /**
+     * Runs the tasks handed over since the last loop iteration
+     */
+    private void runPendingTasks() {
+        Runnable task;
+        while ((task = pendingTasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    /**
+     * Writes the responses queued since the last flush
+     */
+    private void flushPendingConnections() {
+        NioConnection connection;
+        while ((connection = pendingFlushes.poll()) != null) {
+            connection.flush();
+        }
+    }
+}
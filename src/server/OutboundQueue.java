@@ -0,0 +1,253 @@
+package server;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded queue of the frames waiting to be written to one client
+ * Any thread can queue a frame without blocking on the socket; a single drainer writes them in order.
+ * A frame queued with a coalescing key replaces the unsent frame with the same key (e.g. an older lobby snapshot).
+ * A client whose queue stays over the high-water mark is a slow consumer and gets evicted
+ */
+public class OutboundQueue {
+
+    /**
+     * How long a queue may stay over the high-water mark before its client is evicted, in milliseconds
+     */
+    private static final long SLOW_CONSUMER_GRACE_MILLIS = 5_000;
+
+    /**
+     * Multiple of the high-water mark at which a client is evicted right away, bounds the memory held per client
+     */
+    private static final int HARD_LIMIT_FACTOR = 4;
+
+    /**
+     * Queued bytes above which the client is considered slow
+     */
+    private static volatile int highWaterMark = 1024 * 1024;
+
+    /**
+     * The queued frames, oldest first
+     */
+    private final Deque<Entry> entries;
+
+    /**
+     * Guards {@link #entries} and the counters
+     */
+    private final ReentrantLock lock;
+
+    /**
+     * If a drainer is writing the frames
+     */
+    private final AtomicBoolean draining;
+
+    /**
+     * Number of bytes queued and not yet written
+     */
+    private long queuedBytes;
+
+    /**
+     * Time the queue went over the high-water mark, 0 when it is below
+     */
+    private long overSince;
+
+    /**
+     * Default constructor
+     */
+    public OutboundQueue() {
+        this.entries = new ArrayDeque<>();
+        this.lock = new ReentrantLock();
+        this.draining = new AtomicBoolean();
+    }
+
+    /**
+     * Sets the queued bytes above which a client is considered slow
+     * @param bytes The high-water mark in bytes
+     */
+    public static void setHighWaterMark(int bytes) {
+        highWaterMark = bytes;
+    }
+
+    /**
+     * Queues a frame, can be called from any thread
+     * @param frame The frame, header included
+     * @param coalesceKey Replaces the unsent frame queued with the same key, null to always queue
+     * @return false if the client is a slow consumer and must be evicted, the frame is then dropped
+     */
+    public boolean offer(byte[] frame, String coalesceKey) {
+        lock.lock();
+        try {
+            if (coalesceKey != null) {
+                for (Entry entry : entries) {
+                    if (!entry.inFlight && coalesceKey.equals(entry.coalesceKey)) {
+                        queuedBytes += frame.length - entry.buffer.remaining();
+                        entry.buffer = ByteBuffer.wrap(frame);
+                        ServerMetrics.getInstance().recordCoalescedFrame();
+                        return !checkSlow(System.currentTimeMillis());
+                    }
+                }
+            }
+            entries.add(new Entry(ByteBuffer.wrap(frame), coalesceKey));
+            queuedBytes += frame.length;
+            return !checkSlow(System.currentTimeMillis());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Checks if the client is a slow consumer, used to evict clients that stopped reading entirely
+     * @param now The current time in milliseconds
+     * @return true if the client must be evicted
+     */
+    public boolean isSlow(long now) {
+        lock.lock();
+        try {
+            return checkSlow(now);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the oldest frames to write, the frames are then no longer replaced by coalescing
+     * @param batch The array to fill
+     * @return the number of frames put in the array
+     */
+    public int peek(ByteBuffer[] batch) {
+        lock.lock();
+        try {
+            int size = 0;
+            for (Iterator<Entry> it = entries.iterator(); it.hasNext() && size < batch.length; ) {
+                Entry entry = it.next();
+                entry.inFlight = true;
+                batch[size++] = entry.buffer;
+            }
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the frames fully written since the last {@link #peek(ByteBuffer[])}
+     */
+    public void removeWritten() {
+        lock.lock();
+        try {
+            while (!entries.isEmpty() && !entries.peekFirst().buffer.hasRemaining()) {
+                queuedBytes -= entries.pollFirst().buffer.limit();
+            }
+            for (Entry entry : entries) {
+                if (entry.buffer.position() > 0) {
+                    queuedBytes -= entry.buffer.position(); // partially written head, count what is left
+                    entry.buffer = entry.buffer.slice();
+                } else {
+                    entry.inFlight = false;
+                }
+            }
+            if (queuedBytes <= highWaterMark) {
+                overSince = 0;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Checks if there is no frame to write
+     * @return true if the queue is empty
+     */
+    public boolean isEmpty() {
+        lock.lock();
+        try {
+            return entries.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops every queued frame, used when the connection is closed
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+            queuedBytes = 0;
+            overSince = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Claims the right to drain the queue
+     * @return true if the caller must start a drainer, false if one is already running
+     */
+    public boolean tryStartDrain() {
+        return draining.compareAndSet(false, true);
+    }
+
+    /**
+     * Releases the right to drain the queue once it looks empty
+     * A frame queued meanwhile would otherwise be left behind, so the drainer checks again
+     * @return true if the drainer can stop, false if it must keep draining
+     */
+    public boolean finishDrain() {
+        draining.set(false);
+        return isEmpty() || !tryStartDrain();
+    }
+
+    /**
+     * Updates the time the queue went over the high-water mark and checks if the client is slow
+     * Must be called while holding {@link #lock}
+     * @param now The current time in milliseconds
+     * @return true if the client must be evicted
+     */
+    private boolean checkSlow(long now) {
+        if (queuedBytes <= highWaterMark) {
+            overSince = 0;
+            return false;
+        }
+        if (overSince == 0) {
+            overSince = now;
+        }
+        return queuedBytes > (long) HARD_LIMIT_FACTOR * highWaterMark || now - overSince > SLOW_CONSUMER_GRACE_MILLIS;
+    }
+
+    /**
+     * A queued frame
+     */
+    private static class Entry {
+
+        /**
+         * The frame, its position is how much was already written
+         */
+        ByteBuffer buffer;
+
+        /**
+         * Key of the frame for coalescing, null if it is never replaced
+         */
+        final String coalesceKey;
+
+        /**
+         * If a drainer may be writing the frame, it can not be replaced anymore
+         */
+        boolean inFlight;
+
+        /**
+         * Default constructor
+         * @param buffer The frame
+         * @param coalesceKey Key of the frame for coalescing, null if it is never replaced
+         */
+        Entry(ByteBuffer buffer, String coalesceKey) {
+            this.buffer = buffer;
+            this.coalesceKey = coalesceKey;
+        }
+    }
+}
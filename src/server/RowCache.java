@@ -0,0 +1,335 @@
+package server;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * Bounded write-through cache of database rows, used by {@link DatabaseHelper} in front of SQLite
+ * Writes replace the cached row once the database is written; reads fill the cache on a miss. Rows are evicted
+ * when the cache is full, least recently used first, or when they were not used for their idle time.
+ * The cached objects are mutable models, so they are copied in and out and callers never share them.
+ * @param <K> The type of the keys
+ * @param <V> The type of the rows
+ */
+public class RowCache<K, V> {
+
+    /**
+     * Time between two sweeps of the rows past their idle time, in milliseconds
+     */
+    private static final long SWEEP_INTERVAL_MILLIS = 1000;
+
+    /**
+     * The cached rows, least recently used first
+     */
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    /**
+     * Copies a row, so the cached rows are never shared with callers
+     */
+    private final UnaryOperator<V> copier;
+
+    /**
+     * Gives how long a row may stay unused before it is evicted, in milliseconds
+     */
+    private final ToLongFunction<V> idleMillis;
+
+    /**
+     * Guards every attribute that is not a counter
+     */
+    private final ReentrantLock lock;
+
+    /**
+     * Most rows kept
+     */
+    private int maxSize;
+
+    /**
+     * Incremented by every write, a row read from the database before a write is not cached as it may be outdated
+     */
+    private long writeStamp;
+
+    /**
+     * Time of the last sweep, in milliseconds
+     */
+    private long lastSweep;
+
+    /**
+     * Number of reads answered from the cache
+     */
+    private final LongAdder hits;
+
+    /**
+     * Number of reads that had to query the database
+     */
+    private final LongAdder misses;
+
+    /**
+     * Number of rows evicted because the cache was full or they were idle for too long
+     */
+    private final LongAdder evictions;
+
+    /**
+     * Default constructor
+     * @param maxSize Most rows kept
+     * @param copier Copies a row
+     * @param idleMillis Gives how long a row may stay unused before it is evicted, in milliseconds
+     */
+    public RowCache(int maxSize, UnaryOperator<V> copier, ToLongFunction<V> idleMillis) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.copier = copier;
+        this.idleMillis = idleMillis;
+        this.lock = new ReentrantLock();
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.evictions = new LongAdder();
+        setMaxSize(maxSize);
+    }
+
+    /**
+     * Setter function for {@link #maxSize} attribute
+     * @param maxSize Most rows kept, 0 to disable the cache
+     */
+    public void setMaxSize(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Cache size must not be negative");
+        }
+        lock.lock();
+        try {
+            this.maxSize = maxSize;
+            evictOverflow();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets a cached row
+     * @param key The key of the row
+     * @return a copy of the row, null on a miss
+     */
+    public V get(K key) {
+        long now = System.currentTimeMillis();
+        lock.lock();
+        try {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && entry.isIdle(now)) {
+                entries.remove(key);
+                evictions.increment();
+                entry = null;
+            }
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            entry.lastUsed = now;
+            return copier.apply(entry.row);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the stamp to pass to {@link #fill(Object, Object, long)}, must be taken before reading the database
+     * @return the current write stamp
+     */
+    public long stamp() {
+        lock.lock();
+        try {
+            return writeStamp;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Caches a row read from the database after a miss, unless a write happened since the read started
+     * @param key The key of the row
+     * @param row The row read
+     * @param stamp The stamp taken with {@link #stamp()} before the read
+     */
+    public void fill(K key, V row, long stamp) {
+        lock.lock();
+        try {
+            if (stamp == writeStamp && !entries.containsKey(key)) {
+                store(key, row);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Caches a row written to the database
+     * @param key The key of the row
+     * @param row The row as it was written
+     */
+    public void put(K key, V row) {
+        lock.lock();
+        try {
+            writeStamp++;
+            store(key, row);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the rows changed by a write that did not give them, e.g. an update of several rows
+     * @param filter Selects the rows to remove
+     */
+    public void removeIf(Predicate<V> filter) {
+        lock.lock();
+        try {
+            writeStamp++;
+            entries.values().removeIf(entry -> filter.test(entry.row));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes every row
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            writeStamp++;
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Getter function for {@link #hits} attribute
+     * @return hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Getter function for {@link #misses} attribute
+     * @return misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Getter function for {@link #evictions} attribute
+     * @return evictions
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Gets the number of cached rows
+     * @return the number of rows, idle rows not swept yet included
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Summary of the counters, used for logging
+     * @return the summary
+     */
+    @Override
+    public String toString() {
+        return String.format("Size: %d, Hits: %d, Misses: %d, Evictions: %d", size(), getHits(), getMisses(), getEvictions());
+    }
+
+    /**
+     * Stores a copy of a row, then evicts the idle rows and the rows over the maximum, must be called with the lock held
+     * @param key The key of the row
+     * @param row The row
+     */
+    private void store(K key, V row) {
+        if (maxSize == 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        V copy = copier.apply(row);
+        entries.put(key, new Entry<>(copy, now, idleMillis.applyAsLong(copy)));
+        if (now - lastSweep >= SWEEP_INTERVAL_MILLIS) {
+            lastSweep = now;
+            Iterator<Entry<V>> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().isIdle(now)) {
+                    iterator.remove();
+                    evictions.increment();
+                }
+            }
+        }
+        evictOverflow();
+    }
+
+    /**
+     * Evicts the least recently used rows over the maximum, must be called with the lock held
+     */
+    private void evictOverflow() {
+        Iterator<Entry<V>> iterator = entries.values().iterator();
+        while (entries.size() > maxSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * A cached row with the time it was last used
+     * @param <V> The type of the row
+     */
+    private static class Entry<V> {
+
+        /**
+         * The row, never given to callers
+         */
+        final V row;
+
+        /**
+         * Time the row was last read or written, in milliseconds
+         */
+        long lastUsed;
+
+        /**
+         * How long the row may stay unused, in milliseconds
+         */
+        final long idleMillis;
+
+        /**
+         * Default constructor
+         * @param row The row
+         * @param lastUsed Time the row was last read or written, in milliseconds
+         * @param idleMillis How long the row may stay unused, in milliseconds
+         */
+        Entry(V row, long lastUsed, long idleMillis) {
+            this.row = row;
+            this.lastUsed = lastUsed;
+            this.idleMillis = idleMillis;
+        }
+
+        /**
+         * Checks if the row stayed unused for too long
+         * @param now The current time, in milliseconds
+         * @return true if the row must be evicted
+         */
+        boolean isIdle(long now) {
+            return now - lastUsed >= idleMillis;
+        }
+    }
+}
@@ -0,0 +1,499 @@
+package server;
+
+/**
+ * Startup configuration of the {@link SocketServer}
+ * Every value has a default and can be overridden with a system property (e.g. -Dtictactoe.mode=NIO)
+ */
+public class ServerConfig {
+
+    /**
+     * Prefix of all system properties read by {@link #fromSystemProperties()}
+     */
+    private static final String PROPERTY_PREFIX = "tictactoe.";
+
+    /**
+     * The connection engine to use
+     */
+    private ServerMode mode = ServerMode.BLOCKING;
+
+    /**
+     * Number of selector threads used in {@link ServerMode#NIO}
+     */
+    private int eventLoopThreads = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Smallest response body, in bytes, compressed for clients that negotiated compression
+     */
+    private int compressionThreshold = 1024;
+
+    /**
+     * Time in milliseconds without any request after which a session is closed, 0 to never close idle sessions
+     * Clients that only wait for pushed messages send {@link socket.Request.RequestType#PING} requests to stay connected
+     */
+    private long idleTimeoutMillis = 300_000;
+
+    /**
+     * Most sessions open at once, further connections are answered "Server Busy" and closed
+     */
+    private int maxSessions = 10_000;
+
+    /**
+     * Most connections waiting in the operating system to be accepted
+     */
+    private int acceptBacklog = 128;
+
+    /**
+     * Number of threads accepting connections
+     */
+    private int acceptorThreads = 1;
+
+    /**
+     * If every acceptor gets its own listening socket bound with SO_REUSEPORT, so the kernel spreads connections over them
+     * Otherwise the acceptors share a single listening socket
+     */
+    private boolean reusePort = false;
+
+    /**
+     * If Nagle's algorithm is disabled on accepted sockets, so small responses (e.g. a move) leave right away
+     */
+    private boolean tcpNoDelay = true;
+
+    /**
+     * Send buffer size of accepted sockets in bytes, 0 to keep the operating system default
+     */
+    private int sendBufferSize = 0;
+
+    /**
+     * Receive buffer size of accepted sockets in bytes, 0 to keep the operating system default
+     */
+    private int receiveBufferSize = 0;
+
+    /**
+     * Number of threads running requests in {@link ServerMode#NIO}, 0 to run them on the event loops
+     */
+    private int workerThreads = 2 * Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Most requests waiting for a worker thread in {@link ServerMode#NIO}, further requests are answered "Server Busy"
+     */
+    private int workerQueueSize = 1024;
+
+    /**
+     * Bytes queued for a client above which it is considered a slow consumer and evicted if it does not catch up
+     */
+    private int outboundHighWaterBytes = 1024 * 1024;
+
+    /**
+     * How long a shutdown lets the games being played finish, in milliseconds
+     */
+    private long shutdownTimeoutMillis = 30_000;
+
+    /**
+     * How long polling clients share a lobby snapshot before it is read again, in milliseconds
+     */
+    private long lobbySnapshotMillis = 1000;
+
+    /**
+     * Most database reads running at the same time, each on its own SQLite connection
+     */
+    private int databaseReadConnections = 4;
+
+    /**
+     * Most users, and most events, the database keeps in memory, 0 to read them from SQLite every time
+     */
+    private int cacheSize = 1024;
+
+    /**
+     * How long a user or event the database keeps in memory may stay unused, in milliseconds
+     */
+    private long cacheIdleMillis = 60_000;
+
+    /**
+     * Default constructor, uses the default value of every option
+     */
+    public ServerConfig() {
+    }
+
+    /**
+     * Creates a configuration from the default values overridden by the tictactoe.* system properties
+     * @return the configuration
+     */
+    public static ServerConfig fromSystemProperties() {
+        ServerConfig config = new ServerConfig();
+        String mode = System.getProperty(PROPERTY_PREFIX + "mode");
+        if (mode != null) {
+            config.setMode(ServerMode.valueOf(mode.trim().toUpperCase()));
+        }
+        config.setEventLoopThreads(Integer.getInteger(PROPERTY_PREFIX + "eventLoopThreads", config.getEventLoopThreads()));
+        config.setCompressionThreshold(Integer.getInteger(PROPERTY_PREFIX + "compressionThreshold", config.getCompressionThreshold()));
+        config.setIdleTimeoutMillis(Long.getLong(PROPERTY_PREFIX + "idleTimeoutMillis", config.getIdleTimeoutMillis()));
+        config.setMaxSessions(Integer.getInteger(PROPERTY_PREFIX + "maxSessions", config.getMaxSessions()));
+        config.setAcceptBacklog(Integer.getInteger(PROPERTY_PREFIX + "acceptBacklog", config.getAcceptBacklog()));
+        config.setAcceptorThreads(Integer.getInteger(PROPERTY_PREFIX + "acceptorThreads", config.getAcceptorThreads()));
+        config.setReusePort(Boolean.parseBoolean(System.getProperty(PROPERTY_PREFIX + "reusePort", String.valueOf(config.isReusePort()))));
+        config.setTcpNoDelay(Boolean.parseBoolean(System.getProperty(PROPERTY_PREFIX + "tcpNoDelay", String.valueOf(config.isTcpNoDelay()))));
+        config.setSendBufferSize(Integer.getInteger(PROPERTY_PREFIX + "sendBufferSize", config.getSendBufferSize()));
+        config.setReceiveBufferSize(Integer.getInteger(PROPERTY_PREFIX + "receiveBufferSize", config.getReceiveBufferSize()));
+        config.setWorkerThreads(Integer.getInteger(PROPERTY_PREFIX + "workerThreads", config.getWorkerThreads()));
+        config.setWorkerQueueSize(Integer.getInteger(PROPERTY_PREFIX + "workerQueueSize", config.getWorkerQueueSize()));
+        config.setLobbySnapshotMillis(Long.getLong(PROPERTY_PREFIX + "lobbySnapshotMillis", config.getLobbySnapshotMillis()));
+        config.setDatabaseReadConnections(Integer.getInteger(PROPERTY_PREFIX + "databaseReadConnections", config.getDatabaseReadConnections()));
+        config.setCacheSize(Integer.getInteger(PROPERTY_PREFIX + "cacheSize", config.getCacheSize()));
+        config.setCacheIdleMillis(Long.getLong(PROPERTY_PREFIX + "cacheIdleMillis", config.getCacheIdleMillis()));
+        config.setShutdownTimeoutMillis(Long.getLong(PROPERTY_PREFIX + "shutdownTimeoutMillis", config.getShutdownTimeoutMillis()));
+        config.setOutboundHighWaterBytes(Integer.getInteger(PROPERTY_PREFIX + "outboundHighWaterBytes", config.getOutboundHighWaterBytes()));
+        return config;
+    }
+
+    /**
+     * Getter function for {@link #mode} attribute
+     * @return mode
+     */
+    public ServerMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Setter function for {@link #mode} attribute
+     * @param mode The connection engine to use
+     */
+    public void setMode(ServerMode mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * Getter function for {@link #eventLoopThreads} attribute
+     * @return eventLoopThreads
+     */
+    public int getEventLoopThreads() {
+        return eventLoopThreads;
+    }
+
+    /**
+     * Setter function for {@link #eventLoopThreads} attribute
+     * @param eventLoopThreads Number of selector threads used in {@link ServerMode#NIO}, at least 1
+     */
+    public void setEventLoopThreads(int eventLoopThreads) {
+        if (eventLoopThreads < 1) {
+            throw new IllegalArgumentException("Event loop threads must be at least 1");
+        }
+        this.eventLoopThreads = eventLoopThreads;
+    }
+
+    /**
+     * Getter function for {@link #compressionThreshold} attribute
+     * @return compressionThreshold
+     */
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    /**
+     * Setter function for {@link #compressionThreshold} attribute
+     * @param compressionThreshold Smallest response body, in bytes, compressed for clients that negotiated compression
+     */
+    public void setCompressionThreshold(int compressionThreshold) {
+        if (compressionThreshold < 0) {
+            throw new IllegalArgumentException("Compression threshold must not be negative");
+        }
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    /**
+     * Getter function for {@link #idleTimeoutMillis} attribute
+     * @return idleTimeoutMillis
+     */
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    /**
+     * Setter function for {@link #idleTimeoutMillis} attribute
+     * @param idleTimeoutMillis Time in milliseconds without any request after which a session is closed, 0 to disable
+     */
+    public void setIdleTimeoutMillis(long idleTimeoutMillis) {
+        if (idleTimeoutMillis < 0) {
+            throw new IllegalArgumentException("Idle timeout must not be negative");
+        }
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    /**
+     * Getter function for {@link #maxSessions} attribute
+     * @return maxSessions
+     */
+    public int getMaxSessions() {
+        return maxSessions;
+    }
+
+    /**
+     * Setter function for {@link #maxSessions} attribute
+     * @param maxSessions Most sessions open at once, at least 1
+     */
+    public void setMaxSessions(int maxSessions) {
+        if (maxSessions < 1) {
+            throw new IllegalArgumentException("Max sessions must be at least 1");
+        }
+        this.maxSessions = maxSessions;
+    }
+
+    /**
+     * Getter function for {@link #acceptBacklog} attribute
+     * @return acceptBacklog
+     */
+    public int getAcceptBacklog() {
+        return acceptBacklog;
+    }
+
+    /**
+     * Setter function for {@link #acceptBacklog} attribute
+     * @param acceptBacklog Most connections waiting to be accepted, at least 1
+     */
+    public void setAcceptBacklog(int acceptBacklog) {
+        if (acceptBacklog < 1) {
+            throw new IllegalArgumentException("Accept backlog must be at least 1");
+        }
+        this.acceptBacklog = acceptBacklog;
+    }
+
+    /**
+     * Getter function for {@link #acceptorThreads} attribute
+     * @return acceptorThreads
+     */
+    public int getAcceptorThreads() {
+        return acceptorThreads;
+    }
+
+    /**
+     * Setter function for {@link #acceptorThreads} attribute
+     * @param acceptorThreads Number of threads accepting connections, at least 1
+     */
+    public void setAcceptorThreads(int acceptorThreads) {
+        if (acceptorThreads < 1) {
+            throw new IllegalArgumentException("Acceptor threads must be at least 1");
+        }
+        this.acceptorThreads = acceptorThreads;
+    }
+
+    /**
+     * Getter function for {@link #reusePort} attribute
+     * @return reusePort
+     */
+    public boolean isReusePort() {
+        return reusePort;
+    }
+
+    /**
+     * Setter function for {@link #reusePort} attribute
+     * @param reusePort If every acceptor gets its own listening socket bound with SO_REUSEPORT
+     */
+    public void setReusePort(boolean reusePort) {
+        this.reusePort = reusePort;
+    }
+
+    /**
+     * Getter function for {@link #tcpNoDelay} attribute
+     * @return tcpNoDelay
+     */
+    public boolean isTcpNoDelay() {
+        return tcpNoDelay;
+    }
+
+    /**
+     * Setter function for {@link #tcpNoDelay} attribute
+     * @param tcpNoDelay If Nagle's algorithm is disabled on accepted sockets
+     */
+    public void setTcpNoDelay(boolean tcpNoDelay) {
+        this.tcpNoDelay = tcpNoDelay;
+    }
+
+    /**
+     * Getter function for {@link #sendBufferSize} attribute
+     * @return sendBufferSize
+     */
+    public int getSendBufferSize() {
+        return sendBufferSize;
+    }
+
+    /**
+     * Setter function for {@link #sendBufferSize} attribute
+     * @param sendBufferSize Send buffer size of accepted sockets in bytes, 0 to keep the operating system default
+     */
+    public void setSendBufferSize(int sendBufferSize) {
+        if (sendBufferSize < 0) {
+            throw new IllegalArgumentException("Send buffer size must not be negative");
+        }
+        this.sendBufferSize = sendBufferSize;
+    }
+
+    /**
+     * Getter function for {@link #receiveBufferSize} attribute
+     * @return receiveBufferSize
+     */
+    public int getReceiveBufferSize() {
+        return receiveBufferSize;
+    }
+
+    /**
+     * Setter function for {@link #receiveBufferSize} attribute
+     * @param receiveBufferSize Receive buffer size of accepted sockets in bytes, 0 to keep the operating system default
+     */
+    public void setReceiveBufferSize(int receiveBufferSize) {
+        if (receiveBufferSize < 0) {
+            throw new IllegalArgumentException("Receive buffer size must not be negative");
+        }
+        this.receiveBufferSize = receiveBufferSize;
+    }
+
+    /**
+     * Getter function for {@link #workerThreads} attribute
+     * @return workerThreads
+     */
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    /**
+     * Setter function for {@link #workerThreads} attribute
+     * @param workerThreads Number of threads running requests in {@link ServerMode#NIO}, 0 to run them on the event loops
+     */
+    public void setWorkerThreads(int workerThreads) {
+        if (workerThreads < 0) {
+            throw new IllegalArgumentException("Worker threads must not be negative");
+        }
+        this.workerThreads = workerThreads;
+    }
+
+    /**
+     * Getter function for {@link #workerQueueSize} attribute
+     * @return workerQueueSize
+     */
+    public int getWorkerQueueSize() {
+        return workerQueueSize;
+    }
+
+    /**
+     * Setter function for {@link #workerQueueSize} attribute
+     * @param workerQueueSize Most requests waiting for a worker thread, at least 1
+     */
+    public void setWorkerQueueSize(int workerQueueSize) {
+        if (workerQueueSize < 1) {
+            throw new IllegalArgumentException("Worker queue size must be at least 1");
+        }
+        this.workerQueueSize = workerQueueSize;
+    }
+
+    /**
+     * Getter function for {@link #outboundHighWaterBytes} attribute
+     * @return outboundHighWaterBytes
+     */
+    public int getOutboundHighWaterBytes() {
+        return outboundHighWaterBytes;
+    }
+
+    /**
+     * Setter function for {@link #outboundHighWaterBytes} attribute
+     * @param outboundHighWaterBytes Bytes queued for a client above which it is considered a slow consumer, at least 1
+     */
+    public void setOutboundHighWaterBytes(int outboundHighWaterBytes) {
+        if (outboundHighWaterBytes < 1) {
+            throw new IllegalArgumentException("Outbound high-water mark must be at least 1");
+        }
+        this.outboundHighWaterBytes = outboundHighWaterBytes;
+    }
+
+    /**
+     * Getter function for {@link #shutdownTimeoutMillis} attribute
+     * @return shutdownTimeoutMillis
+     */
+    public long getShutdownTimeoutMillis() {
+        return shutdownTimeoutMillis;
+    }
+
+    /**
+     * Setter function for {@link #shutdownTimeoutMillis} attribute
+     * @param shutdownTimeoutMillis How long a shutdown lets the games being played finish, in milliseconds
+     */
+    public void setShutdownTimeoutMillis(long shutdownTimeoutMillis) {
+        if (shutdownTimeoutMillis < 0) {
+            throw new IllegalArgumentException("Shutdown timeout must not be negative");
+        }
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+    }
+
+    /**
+     * Getter function for {@link #lobbySnapshotMillis} attribute
+     * @return lobbySnapshotMillis
+     */
+    public long getLobbySnapshotMillis() {
+        return lobbySnapshotMillis;
+    }
+
+    /**
+     * Setter function for {@link #lobbySnapshotMillis} attribute
+     * @param lobbySnapshotMillis How long polling clients share a lobby snapshot, in milliseconds, 0 to read it on every poll
+     */
+    public void setLobbySnapshotMillis(long lobbySnapshotMillis) {
+        if (lobbySnapshotMillis < 0) {
+            throw new IllegalArgumentException("Lobby snapshot time must not be negative");
+        }
+        this.lobbySnapshotMillis = lobbySnapshotMillis;
+    }
+
+    /**
+     * Getter function for {@link #databaseReadConnections} attribute
+     * @return databaseReadConnections
+     */
+    public int getDatabaseReadConnections() {
+        return databaseReadConnections;
+    }
+
+    /**
+     * Setter function for {@link #databaseReadConnections} attribute
+     * @param databaseReadConnections Most database reads running at the same time
+     */
+    public void setDatabaseReadConnections(int databaseReadConnections) {
+        if (databaseReadConnections < 1) {
+            throw new IllegalArgumentException("Database read connections must be positive");
+        }
+        this.databaseReadConnections = databaseReadConnections;
+    }
+
+    /**
+     * Getter function for {@link #cacheSize} attribute
+     * @return cacheSize
+     */
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * Setter function for {@link #cacheSize} attribute
+     * @param cacheSize Most users, and most events, kept in memory, 0 to disable the caches
+     */
+    public void setCacheSize(int cacheSize) {
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException("Cache size must not be negative");
+        }
+        this.cacheSize = cacheSize;
+    }
+
+    /**
+     * Getter function for {@link #cacheIdleMillis} attribute
+     * @return cacheIdleMillis
+     */
+    public long getCacheIdleMillis() {
+        return cacheIdleMillis;
+    }
+
+    /**
+     * Setter function for {@link #cacheIdleMillis} attribute
+     * @param cacheIdleMillis How long a cached user or event may stay unused, in milliseconds
+     */
+    public void setCacheIdleMillis(long cacheIdleMillis) {
+        if (cacheIdleMillis < 1) {
+            throw new IllegalArgumentException("Cache idle time must be positive");
+        }
+        this.cacheIdleMillis = cacheIdleMillis;
+    }
+}
@@ -1,29 +1,54 @@
 package server;
 
+import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
+import java.lang.reflect.Type;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
 import model.Event;
 import model.User;
+import socket.BatchResponse;
 import socket.GamingResponse;
+import socket.JsonCodec;
 import socket.PairingResponse;
 import socket.Request;
 import socket.Response;
+import socket.WireProtocol;
 
 /**
- * The `ServerHandler` class is responsible for handling server-related operations and extends the Thread class.
- * It can be used to manage server threads and custom server logic.
+ * The `ServerHandler` class is responsible for handling server-related operations of one client session.
+ * It is a Runnable so the request loop can run on a platform thread or a virtual thread.
  */
-public class ServerHandler extends Thread {
+public class ServerHandler implements Runnable {
+
+    /**
+     * Lazily creates the threads draining the outbound queues of the stream based sessions when first accessed
+     * Daemon threads are used so a write stuck on a dead client never keeps the server alive
+     */
+    private static class WriterHolder {
+        private static final AtomicInteger COUNT = new AtomicInteger();
+        private static final ExecutorService WRITERS = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "session-writer-" + COUNT.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
 
     /**
      * Used for printing logs of different levels
@@ -31,10 +56,15 @@ public class ServerHandler extends Thread {
     private final Logger LOGGER;
 
     /**
-     * Socket connection with a client
+     * Socket connection with a client, null in {@link ServerMode#NIO}
      */
     private final Socket socket;
 
+    /**
+     * Non-blocking connection with a client, null in {@link ServerMode#BLOCKING}
+     */
+    private final NioConnection connection;
+
     /**
      * Input stream to get clients {@link socket.Request}
      */
@@ -46,20 +76,70 @@ public class ServerHandler extends Thread {
     private final DataOutputStream outputStream;
 
     /**
-     * Used to serialize/deserialize objects
+     * Used to serialize/deserialize objects, shared by every session
      */
     private final Gson gson;
 
+    /**
+     * Reused for every polled {@link Request.RequestType#REQUEST_MOVE}, it is encoded before the next request is handled
+     */
+    private final GamingResponse moveResponse;
+
+    /**
+     * Reads and writes the frames of the connection in the protocol negotiated by the client
+     */
+    private final FrameCodec codec;
+
+    /**
+     * Frames waiting to be written to the client
+     */
+    private final OutboundQueue outbound;
+
+    /**
+     * Protocol name accepted by the last HELLO request, applied once its response has been written
+     */
+    private String negotiatedProtocol;
+
+    /**
+     * Serializes writes to the client, responses and pushed messages may come from different threads
+     */
+    private final ReentrantLock writeLock;
+
+    /**
+     * If the client asked for opponent moves to be pushed instead of polling with {@link Request.RequestType#REQUEST_MOVE}
+     */
+    private volatile boolean movePushEnabled;
+
+    /**
+     * If the client tagged a request with a requestId, so it can tell responses from unsolicited messages
+     */
+    private volatile boolean usesRequestIds;
+
+    /**
+     * The long-polling move request of this session that is still parked, if any
+     */
+    private volatile MoveWaitRegistry.MoveWaiter pendingMoveWait;
+
+    /**
+     * Time of the last request received from the client, in milliseconds, used to reap idle sessions
+     */
+    private volatile long lastActivity;
+
+    /**
+     * Set once the session is closed, so the cleanup of {@link #closeSocket()} runs exactly once
+     */
+    private final AtomicBoolean closed;
+
     /**
      * Will be used to store game move
      * A RDBMS will be used to store game move in later milestones
      */
-    public int currentEventId;
+    public volatile int currentEventId;
 
     /**
      * Username of the current client of this socket connection
      */
-    public String currentUsername;
+    public volatile String currentUsername;
 
     /**
      * Default constructor
@@ -71,13 +151,43 @@ public class ServerHandler extends Thread {
         LOGGER = Logger.getLogger(ServerHandler.class.getName());
 
         this.socket = socket;
-        this.gson = new GsonBuilder().serializeNulls().create();
+        this.connection = null;
+        this.gson = JsonCodec.getGson();
+        this.moveResponse = new GamingResponse();
+        this.codec = new FrameCodec();
+        this.outbound = new OutboundQueue();
+        this.writeLock = new ReentrantLock();
         this.inputStream = new DataInputStream(socket.getInputStream());
-        this.outputStream = new DataOutputStream(socket.getOutputStream());
+        this.outputStream = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        this.closed = new AtomicBoolean(false);
+        this.lastActivity = System.currentTimeMillis();
+        SessionRegistry.getInstance().add(this);
+    }
+
+    /**
+     * Constructor used in {@link ServerMode#NIO}
+     * The handler is never started, its {@link NioEventLoop} calls {@link #handleFrame(byte[])} for each request
+     * @param connection Client's non-blocking connection
+     */
+    ServerHandler(NioConnection connection) {
+        LOGGER = Logger.getLogger(ServerHandler.class.getName());
+
+        this.socket = null;
+        this.connection = connection;
+        this.gson = JsonCodec.getGson();
+        this.moveResponse = new GamingResponse();
+        this.codec = new FrameCodec();
+        this.outbound = new OutboundQueue();
+        this.writeLock = new ReentrantLock();
+        this.inputStream = null;
+        this.outputStream = null;
+        this.closed = new AtomicBoolean(false);
+        this.lastActivity = System.currentTimeMillis();
+        SessionRegistry.getInstance().add(this);
     }
 
     /**
-     * Runs immediately after the thread is started
+     * Runs immediately after the session is started on its thread
      * The function continuously waits for a client request and sends a response
      * Until a client disconnects
      */
@@ -86,20 +196,19 @@ public class ServerHandler extends Thread {
         // Keep accepting request until client disconnects are send invalid request
         while (true) {
             try {
-                String serializedRequest = inputStream.readUTF(); // read/receive clients request (blocking operation)
-                Request request = gson.fromJson(serializedRequest, Request.class); // deserialized the request
-                LOGGER.log(Level.INFO,"Client Request: " + currentUsername + " - " + request.getType());
-
-                Response response = handleRequest(request); // get response to client's request
-                String serializedResponse = gson.toJson(response); // serialize the response
-                outputStream.writeUTF(serializedResponse); // write/send the response
-                outputStream.flush(); // Flush the stream, force response to go
+                Request request = codec.readRequest(inputStream); // read/receive clients request (blocking operation)
+                processRequest(request);
             } catch (EOFException e) {
                 LOGGER.log(Level.INFO,"Server Info: Client Disconnected: " + currentUsername + " - " + socket.getRemoteSocketAddress());
                 closeSocket();
                 break;
             } catch (IOException e) {
-                LOGGER.log(Level.SEVERE,"Server Info: Client Connection Failed", e);
+                // The stream is broken or out of sync (e.g. a frame over the size cap, or closed by the reaper), it can not be read again
+                if (!closed.get()) {
+                    LOGGER.log(Level.SEVERE,"Server Info: Client Connection Failed", e);
+                }
+                closeSocket();
+                break;
             }  catch (JsonSyntaxException e) {
                 LOGGER.log(Level.SEVERE,"Server Info: Serialization Error", e);
             } catch (SQLException e) {
@@ -109,114 +218,511 @@ public class ServerHandler extends Thread {
     }
 
     /**
-     * Closes clients connection
+     * Gets the codec of the connection, used by {@link NioConnection} to split and decode frames
+     * @return the codec
      */
-    private void closeSocket() {
-        // Close socket connection and all IO streams
+    FrameCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * Handles a single request frame received by a {@link NioConnection}
+     * Errors are handled the same as in {@link #run()}
+     * @param frame The request frame, header included
+     */
+    void handleFrame(byte[] frame) {
+        try {
+            processRequest(codec.decodeRequest(frame));
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE,"Server Info: Client Connection Failed", e);
+            closeSocket();
+        }  catch (JsonSyntaxException e) {
+            LOGGER.log(Level.SEVERE,"Server Info: Serialization Error", e);
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE,"Server Info: Database Error", e);
+        }
+    }
+
+    /**
+     * Answers a request frame with "Server Busy" without running it, used when the server is saturated
+     * @param frame The request frame, header included
+     */
+    void rejectFrame(byte[] frame) {
+        ServerMetrics.getInstance().recordRejectedRequest();
+        Integer requestId = null;
+        try {
+            Request request = codec.decodeRequest(frame);
+            requestId = request == null ? null : request.getRequestId();
+        } catch (IOException | JsonSyntaxException e) {
+            LOGGER.log(Level.SEVERE,"Server Info: Serialization Error", e);
+        }
+        try {
+            sendResponse(ConstantResponses.withRequestId(ConstantResponses.SERVER_BUSY, requestId));
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE,"Server Info: Client Connection Failed", e);
+        }
+    }
+
+    /**
+     * Handles a request and sends the response to the client
+     * @param request The deserialized request
+     * @throws IOException When the response can not be sent
+     * @throws SQLException When database error occurs
+     */
+    private void processRequest(Request request) throws IOException, SQLException {
+        lastActivity = System.currentTimeMillis();
+        if (request != null && request.getRequestId() != null) {
+            usesRequestIds = true;
+        }
+        LOGGER.log(Level.INFO,"Client Request: " + currentUsername + " - " + (request == null ? null : request.getType()));
+
+        Response response;
+        try {
+            response = handleRequest(request); // get response to client's request
+        } catch (RuntimeException e) { // e.g. data of the wrong shape, the session stays open for the next request
+            LOGGER.log(Level.SEVERE,"Server Info: Request Failed: " + currentUsername + " - " + request.getType(), e);
+            response = ConstantResponses.INVALID_REQUEST;
+        }
+        if (response != null) { // null when the request is parked and answered later
+            response = ConstantResponses.withRequestId(response, request == null ? null : request.getRequestId()); // echo the id for pipelining clients
+            String switchTo = negotiatedProtocol;
+            negotiatedProtocol = null;
+            writeResponse(response, null, switchTo);
+        }
+    }
+
+    /**
+     * Sends a response, or an unsolicited message, to the client
+     * Can be called from any thread
+     * @param response The response to send
+     * @throws IOException When the response can not be sent
+     */
+    void sendResponse(Response response) throws IOException {
+        writeResponse(response, null, null);
+    }
+
+    /**
+     * Sends an unsolicited message that supersedes any unsent message with the same key, e.g. a lobby snapshot
+     * Can be called from any thread
+     * @param response The message to send
+     * @param coalesceKey Key shared by the messages that supersede each other
+     * @throws IOException When the message can not be encoded
+     */
+    void sendResponse(Response response, String coalesceKey) throws IOException {
+        writeResponse(response, coalesceKey, null);
+    }
+
+    /**
+     * Queues a response for the client, it is written by the drainer of the {@link #outbound} queue
+     * The caller never blocks on the socket, a client too slow to keep up is evicted
+     * @param response The response to send
+     * @param coalesceKey Key shared by the messages that supersede each other, null for responses that must all be sent
+     * @param switchTo The protocol name to use from the next frame on, null to keep the current one
+     * @throws IOException When the response can not be encoded
+     */
+    private void writeResponse(Response response, String coalesceKey, String switchTo) throws IOException {
+        if (closed.get()) {
+            return;
+        }
+        boolean accepted;
+        writeLock.lock();
+        try {
+            byte[] frame = codec.encodeResponse(response); // serialize the response
+            if (switchTo != null) {
+                codec.negotiate(switchTo);
+            }
+            accepted = outbound.offer(frame, coalesceKey);
+        } finally {
+            writeLock.unlock();
+        }
+        if (!accepted) {
+            evict();
+        } else if (connection != null) {
+            connection.scheduleFlush(); // the event loop writes the queue
+        } else if (outbound.tryStartDrain()) {
+            WriterHolder.WRITERS.execute(this::drainOutbound);
+        }
+    }
+
+    /**
+     * Writes the queued frames to the stream, runs on a writer thread until the queue is empty
+     * Frames are written back to back and flushed once, so responses to pipelined requests leave together
+     */
+    private void drainOutbound() {
+        ByteBuffer[] batch = new ByteBuffer[16];
+        try {
+            while (true) {
+                int size = outbound.peek(batch);
+                if (size == 0) {
+                    outputStream.flush(); // Flush the stream, force responses to go
+                    if (outbound.finishDrain()) {
+                        return;
+                    }
+                    continue;
+                }
+                for (int i = 0; i < size; i++) {
+                    ByteBuffer frame = batch[i];
+                    outputStream.write(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining()); // write/send the response
+                    frame.position(frame.limit());
+                }
+                outbound.removeWritten();
+            }
+        } catch (IOException e) {
+            if (!closed.get()) {
+                LOGGER.log(Level.SEVERE,"Server Info: Client Connection Failed", e);
+            }
+            outbound.clear();
+            closeSocket();
+        }
+    }
+
+    /**
+     * Checks if the client stopped reading its messages, used by the {@link SessionReaper}
+     * @param now The current time in milliseconds
+     * @return true if the client must be evicted
+     */
+    boolean isSlowConsumer(long now) {
+        return outbound.isSlow(now);
+    }
+
+    /**
+     * Closes the session of a client too slow to read its messages
+     * The cleanup runs on a writer thread, so the thread that queued the message is not held up
+     */
+    void evict() {
+        if (closed.get()) {
+            return;
+        }
+        LOGGER.log(Level.WARNING,"Server Info: Evicting Slow Consumer: " + currentUsername + " - " + getRemoteAddress());
+        ServerMetrics.getInstance().recordEvictedConsumer();
+        WriterHolder.WRITERS.execute(this::closeSocket);
+    }
+
+    /**
+     * Getter function for {@link #outbound} attribute
+     * @return outbound
+     */
+    OutboundQueue getOutbound() {
+        return outbound;
+    }
+
+    /**
+     * Pushes a game update to the opponent of this session's user, if the opponent has enabled move push
+     * @param event The game the update belongs to
+     * @param update The update to push
+     * @return true if the update was pushed
+     */
+    private boolean pushToOpponent(Event event, GamingResponse update) {
+        String opponent = currentUsername.equals(event.getSender()) ? event.getOpponent() : event.getSender();
+        ServerHandler session = SessionRegistry.getInstance().getSession(opponent);
+        if (session == null || !session.movePushEnabled || session.currentEventId != event.getEventId()) {
+            return false;
+        }
         try {
-            socket.close();
-            inputStream.close();
-            outputStream.close();
+            session.sendResponse(update);
+            return true;
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Server Info: Unable to push update to " + opponent, e);
+            return false;
+        }
+    }
+
+    /**
+     * Getter function for {@link #lastActivity} attribute
+     * @return lastActivity
+     */
+    long getLastActivity() {
+        return lastActivity;
+    }
+
+    /**
+     * Gets the address of the client, used for logging
+     * @return the address
+     */
+    String getRemoteAddress() {
+        return String.valueOf(connection != null ? connection.getRemoteAddress() : socket.getRemoteSocketAddress());
+    }
+
+    /**
+     * Closes clients connection and cleans up its session
+     * Can be called from any thread, e.g. by the {@link SessionReaper}, only the first call has an effect
+     */
+    void closeSocket() {
+        if (!closeConnection()) {
+            return;
+        }
 
+        try {
             if(currentUsername != null) {
+                LobbyNotifier.getInstance().invalidate();
+
                 //Set Offline
                 User user = DatabaseHelper.getInstance().getUser(currentUsername);
                 user.setOnline(false);
                 DatabaseHelper.getInstance().updateUser(user);
 
                 //Change the status of all playing and pending gaming
+                Event game = DatabaseHelper.getInstance().getEvent(currentEventId);
                 DatabaseHelper.getInstance().abortAllUserEvents(currentUsername);
+                if (game != null && game.getStatus() == Event.EventStatus.PLAYING) {
+                    pushToOpponent(game, new GamingResponse(Response.ResponseStatus.SUCCESS, "Opponent Abort", -1, false));
+                    MoveWaitRegistry.getInstance().signal(game.getEventId());
+                }
+                LobbyNotifier.getInstance().notifyAllSubscribers(currentUsername);
             }
-        } catch (IOException e) {
-            LOGGER.log(Level.SEVERE,"Server Info: Unable to close socket", e);
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE,"Server Info: Database Exception Occurred", e);
         }
     }
 
+    /**
+     * Checks if the client can receive a message it did not ask for without mistaking it for a response:
+     * it subscribed to pushed moves or lobby updates, or it tags its requests with requestIds in a framed protocol.
+     * A lock-step json/1 client would read such a message as the response to its next request
+     * @return true if unsolicited messages can be sent to the client
+     */
+    boolean acceptsUnsolicitedMessages() {
+        return movePushEnabled || LobbyNotifier.getInstance().isSubscribed(this)
+                || (usesRequestIds && codec.getProtocol() != WireProtocol.JSON);
+    }
+
+    /**
+     * Closes clients connection when the server shuts down
+     * The user and its games are left as they are, the server sets every user offline in one statement afterwards
+     */
+    void closeForShutdown() {
+        closeConnection();
+    }
+
+    /**
+     * Closes the connection and removes the session from the registries, only the first call has an effect
+     * @return true if this call closed the connection
+     */
+    private boolean closeConnection() {
+        if (!closed.compareAndSet(false, true)) {
+            return false;
+        }
+        SessionRegistry.getInstance().remove(this);
+
+        // Close socket connection and all IO streams
+        try {
+            if (connection != null) {
+                connection.closeChannel();
+            } else {
+                socket.close();
+                inputStream.close();
+                outputStream.close();
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE,"Server Info: Unable to close socket", e);
+        }
+
+        writeLock.lock();
+        try {
+            codec.close();
+        } finally {
+            writeLock.unlock();
+        }
+
+        MoveWaitRegistry.MoveWaiter moveWait = pendingMoveWait;
+        if (moveWait != null) {
+            MoveWaitRegistry.getInstance().cancel(moveWait);
+        }
+
+        if(currentUsername != null) {
+            SessionRegistry.getInstance().unregister(currentUsername, this);
+            LobbyNotifier.getInstance().unsubscribe(this);
+        }
+        return true;
+    }
+
+    /**
+     * Checks if the connection has no frame waiting to be written, used to let pending messages go before shutting down
+     * @return true if every queued frame was written
+     */
+    boolean isOutboundEmpty() {
+        return outbound.isEmpty();
+    }
+
     /**
      * Handles all clients {@link Request.RequestType}
      * @param request The request to handle
-     * @return Response to client's request
+     * @return Response to client's request, or null when the request is parked and answered later
      */
     private Response handleRequest(Request request) throws SQLException {
         // Decide which function to call for different types of request
         if (request == null) {
             // Handle the case where the request is null
-            return new Response(Response.ResponseStatus.FAILURE, "Invalid Request");
+            return ConstantResponses.INVALID_REQUEST;
         }
         switch (request.getType()) {
             case REQUEST_MOVE:
-                return handleRequestMove();
+                Integer maxWait = readData(request, Integer.class);
+                if (maxWait != null && maxWait > 0) {
+                    return handleLongPollMove(maxWait, request.getRequestId());
+                }
+                return handleRequestMove(moveResponse);
             case SEND_MOVE:
-                int move = gson.fromJson(request.getData(), Integer.class);
+                int move = readData(request, Integer.class);
                 return handleSendMove(move);
             case REGISTER:
-                User registerUser = gson.fromJson(request.getData(), User.class);
+                User registerUser = readData(request, User.class);
                 return handleRegister(registerUser);
             case LOGIN:
-                User loginUser = gson.fromJson(request.getData(), User.class);
+                User loginUser = readData(request, User.class);
                 return handleLogin(loginUser);
             case UPDATE_PAIRING:
-                return handleUpdatePairing();
+                Long lobbyVersion = readData(request, Long.class);
+                return handleUpdatePairing(lobbyVersion);
             case SEND_INVITATION:
-                String opponent = gson.fromJson(request.getData(), String.class);
+                String opponent = readData(request, String.class);
                 return handleSendInvitation(opponent);
             case ACCEPT_INVITATION:
-                int eventIdToAccept = gson.fromJson(request.getData(), Integer.class);
+                int eventIdToAccept = readData(request, Integer.class);
                 return handleAcceptInvitation(eventIdToAccept);
             case DECLINE_INVITATION:
-                int eventIdToDecline = gson.fromJson(request.getData(), Integer.class);
+                int eventIdToDecline = readData(request, Integer.class);
                 return handleDeclineInvitation(eventIdToDecline);
             case ACKNOWLEDGE_RESPONSE:
-                int eventIdToAcknowledge = gson.fromJson(request.getData(), Integer.class);
+                int eventIdToAcknowledge = readData(request, Integer.class);
                 return handleAcknowledgeResponse(eventIdToAcknowledge);
             case COMPLETE_GAME:
                 return handleCompleteGame();
             case ABORT_GAME:
                 return handleAbortGame();
+            case SUBSCRIBE_MOVES:
+                return handleSubscribeMoves();
+            case SUBSCRIBE_PAIRING:
+                return handleSubscribePairing();
+            case BATCH:
+                List<Request> subRequests = readData(request, new TypeToken<List<Request>>(){}.getType());
+                return handleBatch(subRequests);
+            case HELLO:
+                return handleHello(readData(request, String.class));
+            case PING:
+                return ConstantResponses.PONG;
             default: // Invalid request type
-                return new Response(Response.ResponseStatus.FAILURE, "Invalid Request");
+                return ConstantResponses.INVALID_REQUEST;
+        }
+    }
+
+
+    /**
+     * Reads the data of a request
+     * Requests decoded by the binary protocol, or sent with the JSON "payload" field, already carry their typed payload;
+     * legacy JSON requests carry the data as a JSON string, decoded here
+     * @param request The request
+     * @param type The type of the data
+     * @param <T> The type of the data
+     * @return the data, null if the request has none
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T readData(Request request, Type type) {
+        if (request.getPayload() != null) {
+            return (T) request.getPayload();
+        }
+        return gson.fromJson(request.getData(), type);
+    }
+
+    /**
+     * Handle request of type {@link Request.RequestType#HELLO}
+     * The response is written in the current protocol, the connection switches to the requested protocol right after
+     * @param protocolName The name of the requested {@link WireProtocol}, optionally with {@link FrameCodec#DEFLATE_SUFFIX}
+     * @return a standard response whose message is the accepted protocol name
+     */
+    private Response handleHello(String protocolName) {
+        if (!FrameCodec.isSupported(protocolName)) {
+            return new Response(Response.ResponseStatus.FAILURE, "Unsupported Protocol");
         }
+        negotiatedProtocol = protocolName;
+        return new Response(Response.ResponseStatus.SUCCESS, protocolName);
     }
 
+    /**
+     * Handle request of type {@link Request.RequestType#BATCH}
+     * The sub-requests are handled one by one in order, as if sent separately, and answered with a single frame.
+     * A long-polling {@link Request.RequestType#REQUEST_MOVE} that gets parked is answered later on its own frame
+     * @param subRequests The requests of the batch
+     * @return a batch response with the response to every sub-request
+     * @throws SQLException When database error occurs
+     */
+    private Response handleBatch(List<Request> subRequests) throws SQLException {
+        if (subRequests == null) {
+            return ConstantResponses.INVALID_REQUEST;
+        }
+        List<Response> responses = new ArrayList<>(subRequests.size());
+        for (Request subRequest : subRequests) {
+            Response response;
+            if (subRequest != null && subRequest.getType() == Request.RequestType.BATCH) {
+                response = ConstantResponses.INVALID_REQUEST; // no nested batches
+            } else {
+                response = handleRequest(subRequest);
+            }
+            if (response == moveResponse) { // the pooled instance would be overwritten by the next REQUEST_MOVE of the batch
+                response = new GamingResponse(moveResponse.getStatus(), moveResponse.getMessage(), moveResponse.getMove(), moveResponse.isActive());
+            }
+            if (response != null) {
+                responses.add(ConstantResponses.withRequestId(response, subRequest == null ? null : subRequest.getRequestId()));
+            }
+        }
+        return new BatchResponse(Response.ResponseStatus.SUCCESS, "Batch Handled", responses);
+    }
+
+    /**
+     * Handle request of type {@link Request.RequestType#REQUEST_MOVE} carrying a maximum wait
+     * The request is answered right away if the opponent already moved or the game is over,
+     * otherwise it is parked in the {@link MoveWaitRegistry} until one of those happens or the wait expires
+     * @param maxWaitMillis How long the client is willing to wait for the move, in milliseconds
+     * @param requestId The identifier of the request, echoed on the response when it is answered later
+     * @return a game response with move information, or null when the request is parked
+     * @throws SQLException When database error occurs
+     */
+    private GamingResponse handleLongPollMove(int maxWaitMillis, Integer requestId) throws SQLException {
+        MoveWaitRegistry.MoveWaiter waiter = MoveWaitRegistry.getInstance().register(currentEventId, this, maxWaitMillis, requestId);
+        pendingMoveWait = waiter;
+        return waiter.poll();
+    }
 
     /**
      * Handle request of type {@link Request.RequestType#REQUEST_MOVE}
-     * @return a game response with move information
+     * @return a new game response with move information
+     * @throws SQLException When database error occurs
+     */
+    GamingResponse handleRequestMove() throws SQLException {
+        return handleRequestMove(new GamingResponse());
+    }
+
+    /**
+     * Handle request of type {@link Request.RequestType#REQUEST_MOVE}, filling a response that may be reused
+     * @param response The response to fill, every field is overwritten
+     * @return the filled response, or a constant response when there is no game
      * @throws SQLException When database error occurs
      */
-    private GamingResponse handleRequestMove() throws SQLException {
+    private GamingResponse handleRequestMove(GamingResponse response) throws SQLException {
         Event event = DatabaseHelper.getInstance().getEvent(currentEventId);
         if(event != null) {
-            GamingResponse response = new GamingResponse();
             response.setStatus(Response.ResponseStatus.SUCCESS);
+            response.setRequestId(null);
 
             if (event.getStatus() == Event.EventStatus.ABORTED) {
                 response.setActive(false);
                 response.setMessage("Opponent Abort");
+                response.setMove(0);
                 return response;
             } else if (event.getStatus() == Event.EventStatus.COMPLETED) {
                 response.setActive(false);
                 response.setMessage("Opponent Deny Play Again");
+                response.setMove(0);
                 return response;
             } else {
                 response.setActive(true);
                 response.setMessage("Move Update");
             }
-            // check if there is a valid move made by my opponent
-            if (event.getMove() != -1 && !event.getTurn().equals(currentUsername)) {
-                response.setMove(event.getMove());
-                // Delete the move
-                event.setMove(-1);
-                event.setTurn(null);
-                DatabaseHelper.getInstance().updateEvent(event);
-            } else {
-                response.setMove(-1);
-            }
+            // Take the move made by my opponent, if any, so no other request of mine gets it too
+            response.setMove(DatabaseHelper.getInstance().consumeMove(currentEventId, currentUsername));
             return response;
         } else {
-            return new GamingResponse(Response.ResponseStatus.FAILURE, "No active Game", -1, false);
+            return ConstantResponses.NO_ACTIVE_GAME_UPDATE;
         }
     }
 
@@ -230,19 +736,25 @@ public class ServerHandler extends Thread {
         Event event = DatabaseHelper.getInstance().getEvent(currentEventId);
         if(event != null) {
             if (move < 0 || move > 8) { // Check for valid move
-                return new Response(Response.ResponseStatus.FAILURE, "Invalid Move");
+                return ConstantResponses.INVALID_MOVE;
             }
             if (event.getTurn() == null || !event.getTurn().equals(currentUsername)) {
-                // Save the move in the server and return a standard Response
-                event.setMove(move);
+                // Save the move in the server before anyone is told about it
                 event.setTurn(currentUsername);
+                event.setMove(move);
                 DatabaseHelper.getInstance().updateEvent(event);
-                return new Response(Response.ResponseStatus.SUCCESS, "New mode added to Game");
+                // Push the move to the opponent when it is subscribed, it is then saved as already delivered
+                if (pushToOpponent(event, new GamingResponse(Response.ResponseStatus.SUCCESS, "Move Update", move, true))) {
+                    String opponent = currentUsername.equals(event.getSender()) ? event.getOpponent() : event.getSender();
+                    DatabaseHelper.getInstance().consumeMove(event.getEventId(), opponent);
+                }
+                MoveWaitRegistry.getInstance().signal(event.getEventId());
+                return ConstantResponses.MOVE_ADDED;
             } else {
-                return new Response(Response.ResponseStatus.FAILURE, "Not your turn to move");
+                return ConstantResponses.NOT_YOUR_TURN;
             }
         } else {
-            return new Response(Response.ResponseStatus.FAILURE, "No active Game");
+            return ConstantResponses.NO_ACTIVE_GAME;
         }
     }
 
@@ -279,7 +791,13 @@ public class ServerHandler extends Thread {
         } else {
             user.setOnline(true);
             DatabaseHelper.getInstance().updateUser(user);
+            if (currentUsername != null) {
+                SessionRegistry.getInstance().unregister(currentUsername, this);
+            }
             currentUsername = user.getUsername();
+            codec.setLoggedIn(true); // larger frames are only accepted from logged in clients
+            SessionRegistry.getInstance().register(currentUsername, this);
+            LobbyNotifier.getInstance().notifyAllSubscribers(currentUsername);
             response = new Response(Response.ResponseStatus.SUCCESS, "Logged in as: " + user.getUsername());
         }
         return response;
@@ -287,21 +805,33 @@ public class ServerHandler extends Thread {
 
     /**
      * Handle request of type {@link Request.RequestType#UPDATE_PAIRING}
+     * @param lobbyVersion The version of the lobby the client has, null to get every available user
      * @return pairing update with available players, invitation, and invitation response
      * @throws SQLException When database error occurs
      */
-    private PairingResponse handleUpdatePairing() throws SQLException {
+    private PairingResponse handleUpdatePairing(Long lobbyVersion) throws SQLException {
         if(currentUsername == null) {
             return new PairingResponse(Response.ResponseStatus.FAILURE, "Not logged in", null, null, null);
         }
-        //Getting all available users
-        List<User> availableUsers = DatabaseHelper.getInstance().getAvailableUsers(currentUsername);
-        //Checking for user's invitation
-        Event invitation = DatabaseHelper.getInstance().getUserInvitation(currentUsername);
-        //Checking for user's response to invitation
-        Event invitationResponse = DatabaseHelper.getInstance().getUserInvitationResponse(currentUsername);
+        if (lobbyVersion != null) {
+            return LobbyNotifier.getInstance().createUpdateSince(currentUsername, lobbyVersion);
+        }
+        return LobbyNotifier.getInstance().createUpdate(currentUsername);
+    }
 
-        return new PairingResponse(Response.ResponseStatus.SUCCESS, "Update", availableUsers, invitation, invitationResponse);
+    /**
+     * Handle request of type {@link Request.RequestType#SUBSCRIBE_PAIRING}
+     * After this request, pairing updates are pushed as unsolicited {@link PairingResponse} messages
+     * whenever the lobby changes, instead of being polled with {@link Request.RequestType#UPDATE_PAIRING}
+     * @return the current pairing update
+     * @throws SQLException When database error occurs
+     */
+    private PairingResponse handleSubscribePairing() throws SQLException {
+        PairingResponse response = handleUpdatePairing(null);
+        if(currentUsername != null) {
+            LobbyNotifier.getInstance().subscribe(this);
+        }
+        return response;
     }
 
     /**
@@ -313,7 +843,7 @@ public class ServerHandler extends Thread {
     private Response handleSendInvitation(String opponent) throws SQLException {
         Response response;
         if(currentUsername == null) {
-            return new Response(Response.ResponseStatus.FAILURE, "Not logged in");
+            return ConstantResponses.NOT_LOGGED_IN;
         }
         //Checking if user is available for request
         if(DatabaseHelper.getInstance().isUserAvailable(opponent)) {
@@ -324,6 +854,7 @@ public class ServerHandler extends Thread {
             event.setMove(-1);
 
             DatabaseHelper.getInstance().createEvent(event);
+            LobbyNotifier.getInstance().notifyUser(opponent);
             response = new Response(Response.ResponseStatus.SUCCESS, "Game Invitation Sent");
         } else {
             response = new Response(Response.ResponseStatus.FAILURE, "User can not accept invitation at the moment");
@@ -347,9 +878,10 @@ public class ServerHandler extends Thread {
             DatabaseHelper.getInstance().abortAllUserEvents(currentUsername);
             DatabaseHelper.getInstance().updateEvent(event);
             currentEventId = eventId;
+            LobbyNotifier.getInstance().notifyAllSubscribers(currentUsername, event.getSender());
             return new Response(Response.ResponseStatus.SUCCESS, "Invitation Accepted");
         }else {
-            return new Response(Response.ResponseStatus.FAILURE, "Invalid Event ID");
+            return ConstantResponses.INVALID_EVENT_ID;
         }
     }
 
@@ -364,9 +896,10 @@ public class ServerHandler extends Thread {
         if(event != null && event.getStatus() == Event.EventStatus.PENDING) {
             event.setStatus(Event.EventStatus.DECLINED);
             DatabaseHelper.getInstance().updateEvent(event);
+            LobbyNotifier.getInstance().notifyUser(event.getSender());
             return new Response(Response.ResponseStatus.SUCCESS, "Invite Declined");
         } else {
-            return new Response(Response.ResponseStatus.FAILURE, "Invalid Event ID");
+            return ConstantResponses.INVALID_EVENT_ID;
         }
     }
 
@@ -388,9 +921,10 @@ public class ServerHandler extends Thread {
                 event.setStatus(Event.EventStatus.ABORTED);
             }
             DatabaseHelper.getInstance().updateEvent(event);
-            return new Response(Response.ResponseStatus.SUCCESS, "Acknowledged");
+            LobbyNotifier.getInstance().invitationsChanged(currentUsername);
+            return ConstantResponses.ACKNOWLEDGED;
         } else {
-            return new Response(Response.ResponseStatus.FAILURE, "Invalid Event ID");
+            return ConstantResponses.INVALID_EVENT_ID;
         }
     }
 
@@ -402,11 +936,14 @@ public class ServerHandler extends Thread {
     private Response handleCompleteGame() throws SQLException {
         Event event = DatabaseHelper.getInstance().getEvent(currentEventId);
         if(event == null || event.getStatus() != Event.EventStatus.PLAYING) {
-            return new Response(Response.ResponseStatus.FAILURE, "Invalid Game");
+            return ConstantResponses.INVALID_GAME;
         }
         event.setStatus(Event.EventStatus.COMPLETED);
         currentEventId = -1;
         DatabaseHelper.getInstance().updateEvent(event);
+        pushToOpponent(event, new GamingResponse(Response.ResponseStatus.SUCCESS, "Opponent Deny Play Again", -1, false));
+        MoveWaitRegistry.getInstance().signal(event.getEventId());
+        LobbyNotifier.getInstance().notifyAllSubscribers(event.getSender(), event.getOpponent());
         return new Response(Response.ResponseStatus.SUCCESS, "Game Completed");
     }
 
@@ -418,11 +955,28 @@ public class ServerHandler extends Thread {
     private Response handleAbortGame() throws SQLException {
         Event event = DatabaseHelper.getInstance().getEvent(currentEventId);
         if(event == null || event.getStatus() != Event.EventStatus.PLAYING) {
-            return new Response(Response.ResponseStatus.FAILURE, "Invalid Game");
+            return ConstantResponses.INVALID_GAME;
         }
         event.setStatus(Event.EventStatus.ABORTED);
         DatabaseHelper.getInstance().updateEvent(event);
         currentEventId = -1;
+        pushToOpponent(event, new GamingResponse(Response.ResponseStatus.SUCCESS, "Opponent Abort", -1, false));
+        MoveWaitRegistry.getInstance().signal(event.getEventId());
+        LobbyNotifier.getInstance().notifyAllSubscribers(event.getSender(), event.getOpponent());
         return new Response(Response.ResponseStatus.SUCCESS, "Game Aborted");
     }
+
+    /**
+     * Handle request of type {@link Request.RequestType#SUBSCRIBE_MOVES}
+     * After this request, opponent moves and game endings are pushed as unsolicited {@link GamingResponse}
+     * messages instead of being polled with {@link Request.RequestType#REQUEST_MOVE}
+     * @return a standard response
+     */
+    private Response handleSubscribeMoves() {
+        if(currentUsername == null) {
+            return ConstantResponses.NOT_LOGGED_IN;
+        }
+        movePushEnabled = true;
+        return new Response(Response.ResponseStatus.SUCCESS, "Move Push Enabled");
+    }
 }
\ No newline at end of file
@@ -0,0 +1,259 @@
+package server;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Counters of the server, used to tune its options (e.g. the compression threshold or the worker pool size)
+ * Updated from every session thread, so counters are {@link LongAdder}s
+ */
+public class ServerMetrics {
+
+    /**
+     * Lazily creates the only class instance when first accessed
+     */
+    private static class InstanceHolder {
+        private static final ServerMetrics INSTANCE = new ServerMetrics();
+    }
+
+    /**
+     * Number of frames sent compressed
+     */
+    private final LongAdder compressedFrames;
+
+    /**
+     * Number of frames sent uncompressed by connections that negotiated compression, because they were below the threshold
+     */
+    private final LongAdder skippedFrames;
+
+    /**
+     * Size of the compressed frames before compression, in bytes
+     */
+    private final LongAdder uncompressedBytes;
+
+    /**
+     * Size of the compressed frames after compression, in bytes
+     */
+    private final LongAdder compressedBytes;
+
+    /**
+     * Time spent compressing frames, in nanoseconds
+     */
+    private final LongAdder compressionNanos;
+
+    /**
+     * Number of connections closed right away because the server had too many sessions
+     */
+    private final LongAdder rejectedSessions;
+
+    /**
+     * Number of requests answered "Server Busy" because the worker queue was full
+     */
+    private final LongAdder rejectedRequests;
+
+    /**
+     * Number of queued messages replaced by a newer message with the same key before being sent
+     */
+    private final LongAdder coalescedFrames;
+
+    /**
+     * Number of sessions closed because the client was too slow to read its messages
+     */
+    private final LongAdder evictedConsumers;
+
+    /**
+     * Reads the number of requests waiting for a worker thread
+     */
+    private volatile IntSupplier queueDepth;
+
+    /**
+     * A getter for the singleton class
+     * @return An instance of ServerMetrics class
+     */
+    public static ServerMetrics getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    /**
+     * A private constructor
+     */
+    private ServerMetrics() {
+        compressedFrames = new LongAdder();
+        skippedFrames = new LongAdder();
+        uncompressedBytes = new LongAdder();
+        compressedBytes = new LongAdder();
+        compressionNanos = new LongAdder();
+        rejectedSessions = new LongAdder();
+        rejectedRequests = new LongAdder();
+        coalescedFrames = new LongAdder();
+        evictedConsumers = new LongAdder();
+        queueDepth = () -> 0;
+    }
+
+    /**
+     * Records a compressed frame
+     * @param originalSize The size of the frame body before compression
+     * @param compressedSize The size of the frame body after compression
+     * @param nanos The time spent compressing
+     */
+    public void recordCompression(int originalSize, int compressedSize, long nanos) {
+        compressedFrames.increment();
+        uncompressedBytes.add(originalSize);
+        compressedBytes.add(compressedSize);
+        compressionNanos.add(nanos);
+    }
+
+    /**
+     * Records a frame left uncompressed because it was below the threshold
+     */
+    public void recordSkippedCompression() {
+        skippedFrames.increment();
+    }
+
+    /**
+     * Records a connection closed because the server had too many sessions
+     */
+    public void recordRejectedSession() {
+        rejectedSessions.increment();
+    }
+
+    /**
+     * Records a request answered "Server Busy"
+     */
+    public void recordRejectedRequest() {
+        rejectedRequests.increment();
+    }
+
+    /**
+     * Records a queued message replaced by a newer one
+     */
+    public void recordCoalescedFrame() {
+        coalescedFrames.increment();
+    }
+
+    /**
+     * Records a session closed because the client was too slow
+     */
+    public void recordEvictedConsumer() {
+        evictedConsumers.increment();
+    }
+
+    /**
+     * Sets where the number of requests waiting for a worker thread is read from
+     * @param queueDepth Reads the queue depth
+     */
+    public void setQueueDepth(IntSupplier queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    /**
+     * Getter function for {@link #compressedFrames} attribute
+     * @return compressedFrames
+     */
+    public long getCompressedFrames() {
+        return compressedFrames.sum();
+    }
+
+    /**
+     * Getter function for {@link #skippedFrames} attribute
+     * @return skippedFrames
+     */
+    public long getSkippedFrames() {
+        return skippedFrames.sum();
+    }
+
+    /**
+     * Getter function for {@link #uncompressedBytes} attribute
+     * @return uncompressedBytes
+     */
+    public long getUncompressedBytes() {
+        return uncompressedBytes.sum();
+    }
+
+    /**
+     * Getter function for {@link #compressedBytes} attribute
+     * @return compressedBytes
+     */
+    public long getCompressedBytes() {
+        return compressedBytes.sum();
+    }
+
+    /**
+     * Getter function for {@link #compressionNanos} attribute
+     * @return compressionNanos
+     */
+    public long getCompressionNanos() {
+        return compressionNanos.sum();
+    }
+
+    /**
+     * Getter function for {@link #rejectedSessions} attribute
+     * @return rejectedSessions
+     */
+    public long getRejectedSessions() {
+        return rejectedSessions.sum();
+    }
+
+    /**
+     * Getter function for {@link #rejectedRequests} attribute
+     * @return rejectedRequests
+     */
+    public long getRejectedRequests() {
+        return rejectedRequests.sum();
+    }
+
+    /**
+     * Getter function for {@link #coalescedFrames} attribute
+     * @return coalescedFrames
+     */
+    public long getCoalescedFrames() {
+        return coalescedFrames.sum();
+    }
+
+    /**
+     * Getter function for {@link #evictedConsumers} attribute
+     * @return evictedConsumers
+     */
+    public long getEvictedConsumers() {
+        return evictedConsumers.sum();
+    }
+
+    /**
+     * Gets the number of requests waiting for a worker thread
+     * @return the queue depth
+     */
+    public int getQueueDepth() {
+        return queueDepth.getAsInt();
+    }
+
+    /**
+     * Gets the size of the compressed frames relative to their original size
+     * @return the ratio, 1 if no frame was compressed yet
+     */
+    public double getCompressionRatio() {
+        long original = uncompressedBytes.sum();
+        return original == 0 ? 1 : (double) compressedBytes.sum() / original;
+    }
+
+    /**
+     * Gets the average time spent compressing one kilobyte of frame body
+     * @return the time in nanoseconds, 0 if no frame was compressed yet
+     */
+    public double getCompressionNanosPerKilobyte() {
+        long original = uncompressedBytes.sum();
+        return original == 0 ? 0 : compressionNanos.sum() * 1024.0 / original;
+    }
+
+    /**
+     * Summary of the counters, used for logging
+     * @return the summary
+     */
+    @Override
+    public String toString() {
+        return String.format("Live Sessions: %d, Rejected Sessions: %d, Queue Depth: %d, Rejected Requests: %d, "
+                        + "Coalesced Frames: %d, Evicted Consumers: %d, Compressed Frames: %d, Skipped Frames: %d, Compression Ratio: %.3f, Compression Cost: %.0f ns/KB",
+                SessionRegistry.getInstance().liveCount(), getRejectedSessions(), getQueueDepth(), getRejectedRequests(),
+                getCoalescedFrames(), getEvictedConsumers(),
+                getCompressedFrames(), getSkippedFrames(), getCompressionRatio(), getCompressionNanosPerKilobyte());
+    }
+}
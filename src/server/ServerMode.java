@@ -0,0 +1,21 @@
+package server;
+
+/**
+ * The connection engines the {@link SocketServer} can run with
+ */
+public enum ServerMode {
+    /**
+     * One {@link ServerHandler} thread per client, blocked on the socket stream
+     */
+    BLOCKING,
+
+    /**
+     * A small fixed set of {@link NioEventLoop} threads multiplexing all clients with a {@link java.nio.channels.Selector}
+     */
+    NIO,
+
+    /**
+     * One {@link ServerHandler} per client, each run on a virtual thread, needs Java 21 or later
+     */
+    VIRTUAL
+}
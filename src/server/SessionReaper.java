@@ -0,0 +1,77 @@
+package server;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Closes the sessions that sent no request for longer than the idle timeout, and the clients that stopped reading
+ * Catches clients that vanished without closing their connection, which would otherwise stay online forever.
+ * Closing runs the usual {@link ServerHandler#closeSocket()} cleanup: the user is set offline and its games aborted
+ */
+public class SessionReaper {
+
+    /**
+     * Used for printing logs of different levels
+     */
+    private final Logger LOGGER;
+
+    /**
+     * Time in milliseconds without any request after which a session is closed
+     */
+    private final long idleTimeoutMillis;
+
+    /**
+     * Single thread checking the sessions periodically
+     */
+    private final ScheduledThreadPoolExecutor timer;
+
+    /**
+     * Default constructor
+     * @param idleTimeoutMillis Time in milliseconds without any request after which a session is closed
+     */
+    public SessionReaper(long idleTimeoutMillis) {
+        LOGGER = Logger.getLogger(SessionReaper.class.getName());
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "session-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts checking the sessions, a few times per idle timeout so a session is closed soon after it expires
+     */
+    public void start() {
+        long period = Math.max(10, idleTimeoutMillis / 4);
+        timer.scheduleWithFixedDelay(this::reap, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops checking the sessions
+     */
+    public void stop() {
+        timer.shutdownNow();
+    }
+
+    /**
+     * Closes every session idle for longer than the timeout, and evicts the slow consumers
+     */
+    void reap() {
+        long now = System.currentTimeMillis();
+        for (ServerHandler session : SessionRegistry.getInstance().getLiveSessions()) {
+            if (session.isSlowConsumer(now)) {
+                session.evict();
+            } else if (now - session.getLastActivity() > idleTimeoutMillis) {
+                LOGGER.log(Level.INFO, "Server Info: Closing Idle Session: " + session.currentUsername + " - " + session.getRemoteAddress());
+                try {
+                    session.closeSocket();
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.SEVERE, "Server Info: Unable to close idle session", e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package server;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps track of every live {@link ServerHandler} session, and of the session of every logged in user
+ * Used to route server initiated messages (e.g. an opponent's move) to the right connection
+ * and by the {@link SessionReaper} to find idle sessions
+ */
+public class SessionRegistry {
+
+    /**
+     * Lazily creates the only class instance when first accessed
+     */
+    private static class InstanceHolder {
+        private static final SessionRegistry INSTANCE = new SessionRegistry();
+    }
+
+    /**
+     * Live sessions by username
+     */
+    private final Map<String, ServerHandler> sessions;
+
+    /**
+     * Every open session, logged in or not
+     */
+    private final Set<ServerHandler> liveSessions;
+
+    /**
+     * A getter for the singleton class
+     * @return An instance of SessionRegistry class
+     */
+    public static SessionRegistry getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    /**
+     * A private constructor
+     */
+    private SessionRegistry() {
+        sessions = new ConcurrentHashMap<>();
+        liveSessions = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Adds a session that was just opened
+     * @param session The session
+     */
+    void add(ServerHandler session) {
+        liveSessions.add(session);
+    }
+
+    /**
+     * Removes a session that is closing
+     * @param session The session
+     */
+    void remove(ServerHandler session) {
+        liveSessions.remove(session);
+    }
+
+    /**
+     * Gets every open session
+     * @return a live read-only view of the sessions
+     */
+    public Collection<ServerHandler> getLiveSessions() {
+        return Collections.unmodifiableSet(liveSessions);
+    }
+
+    /**
+     * Registers the session of a user that just logged in, replacing any earlier session of the user
+     * @param username The username of the user
+     * @param session The session of the user
+     */
+    public void register(String username, ServerHandler session) {
+        sessions.put(username, session);
+    }
+
+    /**
+     * Removes the session of a user, unless the user has logged in again from another session
+     * @param username The username of the user
+     * @param session The session that is closing
+     */
+    public void unregister(String username, ServerHandler session) {
+        sessions.remove(username, session);
+    }
+
+    /**
+     * Gets the live session of a user
+     * @param username The username of the user
+     * @return the session, or null if the user is not connected
+     */
+    public ServerHandler getSession(String username) {
+        return sessions.get(username);
+    }
+
+    /**
+     * Gets the number of open sessions, used for admission control
+     * @return the number of open sessions, logged in or not
+     */
+    public int liveCount() {
+        return liveSessions.size();
+    }
+
+    /**
+     * Gets the number of live sessions
+     * @return the number of logged in users with a live session
+     */
+    public int size() {
+        return sessions.size();
+    }
+}
@@ -4,10 +4,25 @@ import java.io.IOException;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.Enumeration;
 
+import model.Event;
+import socket.Response;
+
 /**
  *  The main class for TicTacToe Server that sets up the socket server
  *
@@ -25,26 +40,234 @@ public class SocketServer {
     private final int PORT;
 
     /**
-     * ServerSocket instance
+     * Startup configuration of the server
+     */
+    private final ServerConfig config;
+
+    /**
+     * Listening sockets, used in {@link ServerMode#BLOCKING} and {@link ServerMode#VIRTUAL}
+     * One per acceptor with SO_REUSEPORT, otherwise a single socket shared by the acceptors
+     */
+    private ServerSocket[] serverSockets;
+
+    /**
+     * Listening channels, used in {@link ServerMode#NIO}
+     * One per acceptor with SO_REUSEPORT, otherwise a single channel shared by the acceptors
+     */
+    private ServerSocketChannel[] serverSocketChannels;
+
+    /**
+     * Index of the event loop the next accepted channel is handed to
+     */
+    private final AtomicInteger nextEventLoop = new AtomicInteger();
+
+    /**
+     * Selector threads accepted channels are spread over in {@link ServerMode#NIO}
+     */
+    private NioEventLoop[] eventLoops;
+
+    /**
+     * Runs the client sessions in {@link ServerMode#VIRTUAL}
+     */
+    private ExecutorService sessionExecutor;
+
+    /**
+     * Bounded pool running the requests in {@link ServerMode#NIO}, null when they run on the event loops
+     */
+    private ThreadPoolExecutor requestExecutor;
+
+    /**
+     * Closes idle sessions, null when the idle timeout is disabled
+     */
+    private SessionReaper sessionReaper;
+
+    /**
+     * If the acceptors keep accepting connections, cleared by {@link #stop()}
+     */
+    private volatile boolean running;
+
+    /**
+     * Set by the first call to {@link #stop()}
+     */
+    private final AtomicBoolean stopped = new AtomicBoolean();
+
+    /**
+     * Released once the server is stopped
      */
-    private ServerSocket serverSocket;
+    private final CountDownLatch terminated = new CountDownLatch(1);
 
     /**
      * The main function of the application
      * It instantiates the class, sets up the server and start accepting client's request
      *
-     * @param args command line arguments
+     * @param args command line arguments, the optional first argument is the {@link ServerMode}
      */
     public static void main(String[] args) {
         try {
-            SocketServer socketServer = new SocketServer();
-            socketServer.setup();
-            socketServer.startAcceptingRequest();
+            ServerConfig config = ServerConfig.fromSystemProperties();
+            if (args != null && args.length > 0) {
+                config.setMode(ServerMode.valueOf(args[0].trim().toUpperCase()));
+            }
+            SocketServer socketServer = new SocketServer(config);
+            socketServer.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(socketServer::stop, "server-shutdown"));
+            socketServer.awaitStop();
+        } catch (IOException | IllegalStateException e) {
+            System.out.println(e.getMessage());
+            System.exit(1);
         } catch (Exception e) {
             System.out.println(e.getMessage());
         }
     }
 
+    /**
+     * Sets up the server and starts accepting client's request on the acceptor threads
+     *
+     * @throws IOException When the server can not be set up, e.g. the port is already in use
+     */
+    public void start() throws IOException {
+        setup();
+        running = true;
+        startAcceptingRequest();
+    }
+
+    /**
+     * Waits until the server is stopped
+     *
+     * @throws InterruptedException When the waiting thread is interrupted
+     */
+    public void awaitStop() throws InterruptedException {
+        terminated.await();
+    }
+
+    /**
+     * Stops the server within the configured shutdown timeout, called by the shutdown hook
+     */
+    public void stop() {
+        stop(config.getShutdownTimeoutMillis());
+    }
+
+    /**
+     * Stops the server, only the first call has an effect
+     * Stops accepting, tells the connected clients that accept unsolicited messages, lets the games of connected
+     * users finish until the deadline, closes the connections, then sets every remaining user offline in one statement.
+     * Games still being played at the deadline are left as they are in the database
+     *
+     * @param timeoutMillis How long to let the games being played finish
+     */
+    public void stop(long timeoutMillis) {
+        if (!stopped.compareAndSet(false, true)) {
+            return;
+        }
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        LOGGER.log(Level.INFO, "Server Info: Shutting Down");
+        try {
+            // Stop accepting
+            running = false;
+            closeListeners();
+
+            // Tell connected clients, then let the games being played finish
+            // Lock-step clients are not told, an extra frame would be read as the response to their next request
+            for (ServerHandler session : SessionRegistry.getInstance().getLiveSessions()) {
+                if (session.acceptsUnsolicitedMessages()) {
+                    session.sendResponse(new Response(Response.ResponseStatus.SUCCESS, "Server Shutdown"));
+                }
+            }
+            awaitOutboundDrained(deadline);
+            while (System.currentTimeMillis() < deadline && hasLiveGames()) {
+                Thread.sleep(100);
+            }
+            awaitOutboundDrained(deadline);
+
+            // Close the connections and wait for the requests being handled
+            if (sessionReaper != null) {
+                sessionReaper.stop();
+            }
+            for (ServerHandler session : SessionRegistry.getInstance().getLiveSessions()) {
+                session.closeForShutdown();
+            }
+            if (requestExecutor != null) {
+                requestExecutor.shutdown();
+                requestExecutor.awaitTermination(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            }
+            if (eventLoops != null) {
+                for (NioEventLoop eventLoop : eventLoops) {
+                    eventLoop.shutdown();
+                }
+            }
+            if (sessionExecutor != null) {
+                sessionExecutor.shutdown();
+            }
+
+            // Sets the remaining users offline
+            int offline = DatabaseHelper.getInstance().setAllUsersOffline();
+            LOGGER.log(Level.INFO, "Server Info: Shutdown Complete, " + offline + " User(s) Set Offline");
+            LOGGER.log(Level.INFO, "Server Info: User Cache " + DatabaseHelper.getInstance().getUserCache()
+                    + ", Event Cache " + DatabaseHelper.getInstance().getEventCache());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.log(Level.WARNING, "Server Info: Shutdown Interrupted");
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Server Error: Shutdown Failed", e);
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Server Error: Database Error During Shutdown", e);
+        } finally {
+            terminated.countDown();
+        }
+    }
+
+    /**
+     * Waits until every queued message was written to its client, or until the deadline
+     *
+     * @param deadline Time in milliseconds after which it stops waiting
+     * @throws InterruptedException When the waiting thread is interrupted
+     */
+    private void awaitOutboundDrained(long deadline) throws InterruptedException {
+        for (ServerHandler session : SessionRegistry.getInstance().getLiveSessions()) {
+            while (System.currentTimeMillis() < deadline && !session.isOutboundEmpty()) {
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    /**
+     * Checks if a connected user is still playing a game
+     * Only the games of live sessions are counted, a game left {@link Event.EventStatus#PLAYING} in the
+     * database by a previous run has no player to finish it
+     *
+     * @return true if a live session's current game has {@link Event.EventStatus#PLAYING} status
+     * @throws SQLException When database error occurs
+     */
+    private boolean hasLiveGames() throws SQLException {
+        for (ServerHandler session : SessionRegistry.getInstance().getLiveSessions()) {
+            Event game = DatabaseHelper.getInstance().getEvent(session.currentEventId);
+            if (game != null && game.getStatus() == Event.EventStatus.PLAYING) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Closes the listening sockets, the acceptors blocked on them return
+     */
+    private void closeListeners() {
+        try {
+            if (serverSockets != null) {
+                for (ServerSocket serverSocket : serverSockets) {
+                    serverSocket.close();
+                }
+            }
+            if (serverSocketChannels != null) {
+                for (ServerSocketChannel serverSocketChannel : serverSocketChannels) {
+                    serverSocketChannel.close();
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Server Error: Unable to Close Listening Socket", e);
+        }
+    }
+
     /**
      * Default constructor with default port = 5000
      *
@@ -61,10 +284,32 @@ public class SocketServer {
      * @throws Exception when invalid port is provided
      */
     public SocketServer(int port) throws Exception {
+        this(port, ServerConfig.fromSystemProperties());
+    }
+
+    /**
+     * Constructor with the default port and a given configuration
+     *
+     * @param config The startup configuration of the server
+     * @throws Exception when invalid port is provided
+     */
+    public SocketServer(ServerConfig config) throws Exception {
+        this(5850, config);
+    }
+
+    /**
+     * Constructor that set the {@link #PORT} attribute and the configuration
+     *
+     * @param port The socket server's port number
+     * @param config The startup configuration of the server
+     * @throws Exception when invalid port is provided
+     */
+    public SocketServer(int port, ServerConfig config) throws Exception {
         if (port < 0) {
             throw new Exception("Port number cannot be negative");
         }
         PORT = port;
+        this.config = config;
         LOGGER = Logger.getLogger(SocketServer.class.getName());
     }
 
@@ -74,40 +319,276 @@ public class SocketServer {
 
     /**
      * Sets up the socket server
+     *
+     * @throws IOException When the server can not be set up
      */
-    private void setup() {
+    private void setup() throws IOException {
         try {
-            serverSocket = new ServerSocket(PORT);
+            FrameCodec.setCompressionThreshold(config.getCompressionThreshold());
+            OutboundQueue.setHighWaterMark(config.getOutboundHighWaterBytes());
+            LobbyNotifier.setSnapshotMillis(config.getLobbySnapshotMillis());
+            DatabaseHelper.getInstance().setReadConnections(config.getDatabaseReadConnections());
+            DatabaseHelper.getInstance().setCacheLimits(config.getCacheSize(), config.getCacheIdleMillis());
+            int listeners = listenerCount();
+            if (config.getMode() == ServerMode.NIO) {
+                serverSocketChannels = new ServerSocketChannel[listeners];
+                for (int i = 0; i < listeners; i++) {
+                    serverSocketChannels[i] = openServerSocketChannel();
+                }
+                if (config.getWorkerThreads() > 0) {
+                    requestExecutor = newRequestExecutor();
+                }
+                eventLoops = new NioEventLoop[config.getEventLoopThreads()];
+                for (int i = 0; i < eventLoops.length; i++) {
+                    eventLoops[i] = new NioEventLoop(i, requestExecutor);
+                    eventLoops[i].start();
+                }
+            } else {
+                serverSockets = new ServerSocket[listeners];
+                for (int i = 0; i < listeners; i++) {
+                    serverSockets[i] = openServerSocket();
+                }
+                if (config.getMode() == ServerMode.VIRTUAL) {
+                    sessionExecutor = newVirtualThreadExecutor();
+                }
+            }
+            if (config.getIdleTimeoutMillis() > 0) {
+                sessionReaper = new SessionReaper(config.getIdleTimeoutMillis());
+                sessionReaper.start();
+            }
             LOGGER.log(Level.INFO, "Server Initialization Succeeded"
                     + "\nServer Host Name: " + InetAddress.getLocalHost().getHostName()
                     + "\nServer IP: " + InetAddress.getLocalHost().getHostAddress()
-                    + "\nServer Port Number: " + PORT);
+                    + "\nServer Port Number: " + PORT
+                    + "\nServer Mode: " + config.getMode()
+                    + "\nServer Acceptors: " + config.getAcceptorThreads() + " on " + listeners + " listening socket(s)");
         } catch (UnknownHostException e) {
             LOGGER.log(Level.SEVERE, "Server Error: Unable to Resolve Host", e);
-            System.exit(1);
+            throw e;
+        } catch (IllegalStateException e) {
+            LOGGER.log(Level.SEVERE, "Server Error: " + e.getMessage());
+            closeListeners();
+            throw e;
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, "Server Error: Server Initialization Failed", e);
-            System.exit(1);
-        } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "Server Error: Unknown Exception Occurred", e);
-            System.exit(1);
+            closeListeners();
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the number of listening sockets to open
+     * SO_REUSEPORT is not available on every platform, the acceptors then share a single socket
+     *
+     * @return the number of listening sockets
+     * @throws IOException When the platform can not be checked
+     */
+    private int listenerCount() throws IOException {
+        if (!config.isReusePort()) {
+            return 1;
+        }
+        try (ServerSocket probe = new ServerSocket()) {
+            if (!probe.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+                LOGGER.log(Level.WARNING, "Server Info: SO_REUSEPORT Unavailable, Acceptors Share One Socket");
+                return 1;
+            }
+        }
+        return config.getAcceptorThreads();
+    }
+
+    /**
+     * Opens a listening socket on {@link #PORT}
+     *
+     * @return the bound socket
+     * @throws IOException When the socket can not be bound
+     */
+    private ServerSocket openServerSocket() throws IOException {
+        ServerSocket serverSocket = new ServerSocket();
+        if (config.isReusePort()) {
+            serverSocket.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+        }
+        if (config.getReceiveBufferSize() > 0) {
+            serverSocket.setReceiveBufferSize(config.getReceiveBufferSize()); // inherited by accepted sockets, must be set before bind
+        }
+        serverSocket.bind(new InetSocketAddress(PORT), config.getAcceptBacklog());
+        return serverSocket;
+    }
+
+    /**
+     * Opens a listening channel on {@link #PORT}
+     *
+     * @return the bound channel
+     * @throws IOException When the channel can not be bound
+     */
+    private ServerSocketChannel openServerSocketChannel() throws IOException {
+        ServerSocketChannel serverSocketChannel = ServerSocketChannel.open();
+        if (config.isReusePort()) {
+            serverSocketChannel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+        }
+        if (config.getReceiveBufferSize() > 0) {
+            serverSocketChannel.setOption(StandardSocketOptions.SO_RCVBUF, config.getReceiveBufferSize());
+        }
+        serverSocketChannel.bind(new InetSocketAddress(PORT), config.getAcceptBacklog());
+        return serverSocketChannel;
+    }
+
+    /**
+     * Applies the configured socket options to an accepted socket
+     *
+     * @param socket The accepted socket
+     * @throws IOException When an option can not be set
+     */
+    private void configureSocket(Socket socket) throws IOException {
+        socket.setTcpNoDelay(config.isTcpNoDelay());
+        if (config.getSendBufferSize() > 0) {
+            socket.setSendBufferSize(config.getSendBufferSize());
+        }
+        if (config.getReceiveBufferSize() > 0) {
+            socket.setReceiveBufferSize(config.getReceiveBufferSize());
+        }
+    }
+
+    /**
+     * Creates the bounded pool running the requests in {@link ServerMode#NIO}
+     * When its queue is full the event loops answer "Server Busy" instead of queuing more work
+     *
+     * @return the pool
+     */
+    private ThreadPoolExecutor newRequestExecutor() {
+        AtomicInteger count = new AtomicInteger();
+        ArrayBlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(config.getWorkerQueueSize());
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(config.getWorkerThreads(), config.getWorkerThreads(),
+                60, TimeUnit.SECONDS, queue, runnable -> {
+                    Thread thread = new Thread(runnable, "nio-worker-" + count.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        ServerMetrics.getInstance().setQueueDepth(queue::size);
+        return executor;
+    }
+
+    /**
+     * Checks if a new connection must be turned away because the server has too many sessions
+     *
+     * @return true if the connection must be rejected
+     */
+    private boolean isSaturated() {
+        return SessionRegistry.getInstance().liveCount() >= config.getMaxSessions();
+    }
+
+    /**
+     * Encodes the response sent to connections turned away, in the protocol every connection starts with
+     *
+     * @return the response frame
+     * @throws IOException When the response can not be encoded
+     */
+    private static byte[] busyFrame() throws IOException {
+        return new FrameCodec().encodeResponse(ConstantResponses.SERVER_BUSY);
+    }
+
+    /**
+     * Creates an executor starting a virtual thread per session
+     * The project targets Java 17, so the Java 21 factory is looked up at runtime
+     *
+     * @return the executor used to run the sessions
+     * @throws IllegalStateException When the JVM has no virtual threads
+     */
+    private ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("VIRTUAL Mode Needs Java 21 or Later, Running on Java "
+                    + Runtime.version().feature() + ", Use BLOCKING or NIO Mode", e);
         }
     }
 
     /**
-     * Start accepting client's request
+     * Start accepting client's request, each acceptor runs on its own thread
      */
     private void startAcceptingRequest() {
-        //noinspection InfiniteLoopStatement
-        while (true) {
+        for (int i = 0; i < config.getAcceptorThreads(); i++) {
+            int index = i;
+            Thread acceptor = new Thread(() -> accept(index), "acceptor-" + i);
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+    }
+
+    /**
+     * Runs an acceptor on its listening socket
+     *
+     * @param index The index of the acceptor
+     */
+    private void accept(int index) {
+        if (config.getMode() == ServerMode.NIO) {
+            acceptChannels(serverSocketChannels[index % serverSocketChannels.length]);
+        } else {
+            acceptSockets(serverSockets[index % serverSockets.length]);
+        }
+    }
+
+    /**
+     * Accepts client's sockets in {@link ServerMode#BLOCKING} and {@link ServerMode#VIRTUAL}
+     *
+     * @param serverSocket The listening socket of the acceptor
+     */
+    private void acceptSockets(ServerSocket serverSocket) {
+        while (running) {
             try {
                 // Accept socket connection from the all players and create a new handler to handle all connections
                 Socket socket = serverSocket.accept();
-                LOGGER.log(Level.INFO, "New Socket Client Connect with IP: " + socket.getRemoteSocketAddress());
+                LOGGER.log(Level.FINE, "New Socket Client Connect with IP: " + socket.getRemoteSocketAddress());
+                if (isSaturated()) {
+                    LOGGER.log(Level.WARNING, "Server Info: Too Many Sessions, Rejecting " + socket.getRemoteSocketAddress());
+                    ServerMetrics.getInstance().recordRejectedSession();
+                    try (socket) {
+                        socket.getOutputStream().write(busyFrame());
+                    }
+                    continue;
+                }
+                configureSocket(socket);
                 ServerHandler serverHandler = new ServerHandler(socket);
-                serverHandler.start();
+                if (sessionExecutor != null) {
+                    sessionExecutor.execute(serverHandler);
+                } else {
+                    new Thread(serverHandler).start();
+                }
+            } catch (IOException e) {
+                if (running) { // otherwise the listening socket was closed by stop()
+                    LOGGER.log(Level.SEVERE, "Server Error: Client Connection Failed", e);
+                }
+            } catch (Exception e) {
+                LOGGER.log(Level.SEVERE, "Server Error: Unknown Exception Occurred", e);
+            }
+        }
+    }
+
+    /**
+     * Accepts client's channels in {@link ServerMode#NIO}
+     * Accepted channels are handed to the event loops in round-robin order
+     *
+     * @param serverSocketChannel The listening channel of the acceptor
+     */
+    private void acceptChannels(ServerSocketChannel serverSocketChannel) {
+        while (running) {
+            try {
+                SocketChannel channel = serverSocketChannel.accept();
+                LOGGER.log(Level.FINE, "New Socket Client Connect with IP: " + channel.getRemoteAddress());
+                if (isSaturated()) {
+                    LOGGER.log(Level.WARNING, "Server Info: Too Many Sessions, Rejecting " + channel.getRemoteAddress());
+                    ServerMetrics.getInstance().recordRejectedSession();
+                    try (channel) {
+                        channel.write(ByteBuffer.wrap(busyFrame())); // the channel is still blocking, the frame is small
+                    }
+                    continue;
+                }
+                configureSocket(channel.socket());
+                int next = Math.floorMod(nextEventLoop.getAndIncrement(), eventLoops.length);
+                eventLoops[next].register(channel);
             } catch (IOException e) {
-                LOGGER.log(Level.SEVERE, "Server Error: Client Connection Failed", e);
+                if (running) { // otherwise the listening socket was closed by stop()
+                    LOGGER.log(Level.SEVERE, "Server Error: Client Connection Failed", e);
+                }
             } catch (Exception e) {
                 LOGGER.log(Level.SEVERE, "Server Error: Unknown Exception Occurred", e);
             }
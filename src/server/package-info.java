@@ -2,11 +2,22 @@
  * The `server` package contains classes related to server functionality and socket communication.
  *
  * This package includes the following classes:
- * - `ServerHandler`: A class responsible for handling server-related operations and extending the Thread class.
- *   It can be used to manage server threads and custom server logic.
+ * - `ServerHandler`: A Runnable session responsible for handling server-related operations of one client.
+ *   It can be run on a platform thread, a virtual thread, or driven by an NIO event loop.
  * - `SocketServer`: Represents a server application that listens for and handles incoming socket requests.
+ * - `ServerConfig` and `ServerMode`: The startup configuration of the server and the connection engine it runs with.
+ * - `SessionRegistry`: Tracks every live session, and the session of every logged in user so messages can be pushed to them.
+ * - `SessionReaper`: Closes the sessions idle for longer than the configured timeout.
+ * - `LobbyNotifier`: Pushes lobby updates to subscribed sessions whenever the lobby changes.
+ * - `LobbyChangeLog`: Bounded log of the lobby changes, used to answer pairing updates with only what changed.
+ * - `MoveWaitRegistry`: Parks long-polling move requests until the opponent moves, the game ends or the wait expires.
+ * - `NioEventLoop` and `NioConnection`: A selector based connection engine serving many clients from a few threads.
+ * - `OutboundQueue`: Bounded queue of the frames waiting for one client, coalescing superseded messages.
+ * - `FrameCodec`: Reads and writes the frames of one connection in the wire protocol negotiated by its client.
+ * - `ConstantResponses`: Responses that never change, encoded once per wire protocol.
+ * - `ServerMetrics`: Counters of the server, e.g. the compression ratio and cost, used to tune its options.
  *
- * The `ServerHandler` class provides a flexible way to manage server threads and implement custom server logic.
+ * The `ServerHandler` class provides a flexible way to run client sessions and implement custom server logic.
  * The `SocketServer` class allows you to set up a server and handle incoming socket requests on a specified port.
  *
  * @since 1.0
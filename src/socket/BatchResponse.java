@@ -0,0 +1,48 @@
+package socket;
+
+import java.util.List;
+
+/**
+ * Server response to a BATCH request. It is a subclass of Response.java.
+ * It holds the response to every sub-request, in the order the sub-requests were sent.
+ */
+public class BatchResponse extends Response {
+    private List<Response> responses;
+
+    /**
+     * Default constructor for the class. Must call the constructor of the super class.
+     */
+    public BatchResponse() {
+        super();
+    }
+
+    /**
+     * Constructor that sets all attributes of this class. Must call the constructor of the super class.
+     *
+     * @param status    The status of the response.
+     * @param message   The message associated with the response.
+     * @param responses The responses to the sub-requests of the batch.
+     */
+    public BatchResponse(ResponseStatus status, String message, List<Response> responses) {
+        super(status, message);
+        this.responses = responses;
+    }
+
+    /**
+     * Getter for the responses to the sub-requests.
+     *
+     * @return The responses to the sub-requests.
+     */
+    public List<Response> getResponses() {
+        return responses;
+    }
+
+    /**
+     * Setter for the responses to the sub-requests.
+     *
+     * @param responses The responses to the sub-requests to set.
+     */
+    public void setResponses(List<Response> responses) {
+        this.responses = responses;
+    }
+}
@@ -0,0 +1,651 @@
+package socket;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import model.Event;
+import model.User;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.charset.StandardCharsets;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The `BinaryCodec` class encodes requests and responses for the {@link WireProtocol#BINARY} protocol.
+ *
+ * A request is a fixed opcode byte per {@link Request.RequestType}, a flags byte, the optional request id,
+ * the optional lobby version of an UPDATE_PAIRING and the typed payload of the request. A response is a kind byte
+ * per response class, a flags byte, the status, the message, the optional request id and the fields of the
+ * response class, a {@link PairingResponse} optionally followed by its lobby version, delta flag and removed users.
+ * The optional fields are announced by flags, so a client that never sends a lobby version reads the same bytes.
+ * Integers are varints (zigzag for signed values), strings are a varint length followed by UTF-8 bytes.
+ * A SEND_MOVE is 3 bytes instead of the ~60 bytes of the JSON protocol.
+ * Every length and count read is checked against the bytes left in the frame, and a batch may not contain
+ * another batch, so a malformed frame is rejected with a {@link ProtocolException} before anything is allocated.
+ */
+public final class BinaryCodec {
+
+    /**
+     * Flag set when the request id follows the header
+     */
+    private static final int FLAG_REQUEST_ID = 1;
+
+    /**
+     * Flag set when the lobby version of an UPDATE_PAIRING, or of its {@link PairingResponse}, is present
+     */
+    private static final int FLAG_LOBBY_VERSION = 2;
+
+    /**
+     * Kind byte of a {@link Response}
+     */
+    private static final int KIND_RESPONSE = 0;
+
+    /**
+     * Kind byte of a {@link GamingResponse}
+     */
+    private static final int KIND_GAMING = 1;
+
+    /**
+     * Kind byte of a {@link PairingResponse}
+     */
+    private static final int KIND_PAIRING = 2;
+
+    /**
+     * Kind byte of a {@link BatchResponse}
+     */
+    private static final int KIND_BATCH = 3;
+
+    /**
+     * Used to read the payload of requests that only carry the JSON data string
+     */
+    private static final Gson GSON = JsonCodec.getGson();
+
+    /**
+     * The class only has static methods
+     */
+    private BinaryCodec() {
+    }
+
+    /**
+     * Gets the type of the payload carried by a type of request
+     *
+     * @param type The type of request.
+     * @return The payload type, or null if the request carries no payload.
+     */
+    public static Type payloadType(Request.RequestType type) {
+        switch (type) {
+            case LOGIN:
+            case REGISTER:
+                return User.class;
+            case SEND_INVITATION:
+            case HELLO:
+                return String.class;
+            case ACCEPT_INVITATION:
+            case DECLINE_INVITATION:
+            case ACKNOWLEDGE_RESPONSE:
+            case REQUEST_MOVE:
+            case SEND_MOVE:
+                return Integer.class;
+            case BATCH:
+                return new TypeToken<List<Request>>(){}.getType();
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Encodes a request.
+     *
+     * @param request The request to encode.
+     * @return The encoded request.
+     * @throws IOException If the request can not be encoded.
+     */
+    public static byte[] encodeRequest(Request request) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        writeRequest(new DataOutputStream(bytes), request);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes a request. Its payload is available with {@link Request#getPayload()}.
+     *
+     * @param body The encoded request.
+     * @return The decoded request.
+     * @throws IOException If the bytes are not a valid request.
+     */
+    public static Request decodeRequest(byte[] body) throws IOException {
+        return decodeRequest(body, 0, body.length);
+    }
+
+    /**
+     * Decodes a request from a part of a buffer. Its payload is available with {@link Request#getPayload()}.
+     *
+     * @param buffer The buffer holding the encoded request.
+     * @param offset The offset of the encoded request in the buffer.
+     * @param length The length of the encoded request.
+     * @return The decoded request.
+     * @throws IOException If the bytes are not a valid request.
+     */
+    public static Request decodeRequest(byte[] buffer, int offset, int length) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(buffer, offset, length));
+        Request request = readRequest(in, false);
+        if (in.available() > 0) {
+            throw new ProtocolException("Trailing bytes after request");
+        }
+        return request;
+    }
+
+    /**
+     * Encodes a response.
+     *
+     * @param response The response to encode.
+     * @return The encoded response.
+     * @throws IOException If the response can not be encoded.
+     */
+    public static byte[] encodeResponse(Response response) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        writeResponse(new DataOutputStream(bytes), response);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes a response into the response class it was encoded from.
+     *
+     * @param body The encoded response.
+     * @return The decoded response.
+     * @throws IOException If the bytes are not a valid response.
+     */
+    public static Response decodeResponse(byte[] body) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        Response response = readResponse(in, false);
+        if (in.available() > 0) {
+            throw new ProtocolException("Trailing bytes after response");
+        }
+        return response;
+    }
+
+    /**
+     * Writes a request and its payload
+     */
+    private static void writeRequest(DataOutputStream out, Request request) throws IOException {
+        Long lobbyVersion = lobbyVersion(request);
+        out.writeByte(opcode(request.getType()));
+        out.writeByte((request.getRequestId() != null ? FLAG_REQUEST_ID : 0) | (lobbyVersion != null ? FLAG_LOBBY_VERSION : 0));
+        if (request.getRequestId() != null) {
+            writeVarInt(out, request.getRequestId());
+        }
+        if (lobbyVersion != null) {
+            writeVarLong(out, lobbyVersion);
+        }
+
+        Type payloadType = payloadType(request.getType());
+        if (payloadType == null) {
+            return;
+        }
+        Object payload = request.getPayload() != null ? request.getPayload() : GSON.fromJson(request.getData(), payloadType);
+        if (payloadType == User.class) {
+            writeUser(out, (User) payload);
+        } else if (payloadType == String.class) {
+            writeString(out, (String) payload);
+        } else if (payloadType == Integer.class) {
+            writeNullableInt(out, (Integer) payload);
+        } else {
+            @SuppressWarnings("unchecked")
+            List<Request> requests = (List<Request>) payload;
+            writeVarInt(out, requests == null ? 0 : requests.size() + 1);
+            if (requests != null) {
+                for (Request subRequest : requests) {
+                    writeRequest(out, subRequest);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a request and its payload
+     * @param nested true when reading a sub-request of a batch, which may not be a batch itself
+     */
+    private static Request readRequest(DataInputStream in, boolean nested) throws IOException {
+        Request request = new Request();
+        request.setType(requestType(in.readUnsignedByte()));
+        if (nested && request.getType() == Request.RequestType.BATCH) {
+            throw new ProtocolException("Nested batch request");
+        }
+        int flags = in.readUnsignedByte();
+        if ((flags & FLAG_REQUEST_ID) != 0) {
+            request.setRequestId(readVarInt(in));
+        }
+        if ((flags & FLAG_LOBBY_VERSION) != 0) {
+            request.setPayload(readVarLong(in));
+        }
+
+        Type payloadType = payloadType(request.getType());
+        if (payloadType == User.class) {
+            request.setPayload(readUser(in));
+        } else if (payloadType == String.class) {
+            request.setPayload(readString(in));
+        } else if (payloadType == Integer.class) {
+            request.setPayload(readNullableInt(in));
+        } else if (payloadType != null) {
+            int size = readCount(in);
+            if (size > 0) {
+                List<Request> requests = new ArrayList<>(size - 1);
+                for (int i = 0; i < size - 1; i++) {
+                    requests.add(readRequest(in, true));
+                }
+                request.setPayload(requests);
+            }
+        }
+        return request;
+    }
+
+    /**
+     * Writes a response and the fields of its response class
+     */
+    private static void writeResponse(DataOutputStream out, Response response) throws IOException {
+        if (response instanceof GamingResponse) {
+            out.writeByte(KIND_GAMING);
+        } else if (response instanceof PairingResponse) {
+            out.writeByte(KIND_PAIRING);
+        } else if (response instanceof BatchResponse) {
+            out.writeByte(KIND_BATCH);
+        } else {
+            out.writeByte(KIND_RESPONSE);
+        }
+        boolean hasLobbyVersion = response instanceof PairingResponse && hasLobbyVersion((PairingResponse) response);
+        out.writeByte((response.getRequestId() != null ? FLAG_REQUEST_ID : 0) | (hasLobbyVersion ? FLAG_LOBBY_VERSION : 0));
+        out.writeByte(response.getStatus() == null ? 0 : response.getStatus() == Response.ResponseStatus.SUCCESS ? 1 : 2);
+        writeString(out, response.getMessage());
+        if (response.getRequestId() != null) {
+            writeVarInt(out, response.getRequestId());
+        }
+
+        if (response instanceof GamingResponse) {
+            GamingResponse gamingResponse = (GamingResponse) response;
+            writeSignedVarInt(out, gamingResponse.getMove());
+            out.writeBoolean(gamingResponse.isActive());
+        } else if (response instanceof PairingResponse) {
+            PairingResponse pairingResponse = (PairingResponse) response;
+            List<User> users = pairingResponse.getAvailableUsers();
+            writeVarInt(out, users == null ? 0 : users.size() + 1);
+            if (users != null) {
+                for (User user : users) {
+                    writeUser(out, user);
+                }
+            }
+            writeEvent(out, pairingResponse.getInvitation());
+            writeEvent(out, pairingResponse.getInvitationResponse());
+            if (hasLobbyVersion) {
+                writeVarLong(out, pairingResponse.getLobbyVersion());
+                out.writeBoolean(pairingResponse.isDelta());
+                List<String> removedUsers = pairingResponse.getRemovedUsers();
+                writeVarInt(out, removedUsers == null ? 0 : removedUsers.size() + 1);
+                if (removedUsers != null) {
+                    for (String username : removedUsers) {
+                        writeString(out, username);
+                    }
+                }
+            }
+        } else if (response instanceof BatchResponse) {
+            List<Response> responses = ((BatchResponse) response).getResponses();
+            writeVarInt(out, responses == null ? 0 : responses.size() + 1);
+            if (responses != null) {
+                for (Response subResponse : responses) {
+                    writeResponse(out, subResponse);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a response into the response class it was written from
+     * @param nested true when reading a sub-response of a batch, which may not be a batch itself
+     */
+    private static Response readResponse(DataInputStream in, boolean nested) throws IOException {
+        int kind = in.readUnsignedByte();
+        if (nested && kind == KIND_BATCH) {
+            throw new ProtocolException("Nested batch response");
+        }
+        Response response;
+        switch (kind) {
+            case KIND_RESPONSE: response = new Response(); break;
+            case KIND_GAMING: response = new GamingResponse(); break;
+            case KIND_PAIRING: response = new PairingResponse(); break;
+            case KIND_BATCH: response = new BatchResponse(); break;
+            default: throw new ProtocolException("Unknown response kind: " + kind);
+        }
+        int flags = in.readUnsignedByte();
+        int status = in.readUnsignedByte();
+        response.setStatus(status == 0 ? null : status == 1 ? Response.ResponseStatus.SUCCESS : Response.ResponseStatus.FAILURE);
+        response.setMessage(readString(in));
+        if ((flags & FLAG_REQUEST_ID) != 0) {
+            response.setRequestId(readVarInt(in));
+        }
+
+        if (kind == KIND_GAMING) {
+            GamingResponse gamingResponse = (GamingResponse) response;
+            gamingResponse.setMove(readSignedVarInt(in));
+            gamingResponse.setActive(in.readBoolean());
+        } else if (kind == KIND_PAIRING) {
+            PairingResponse pairingResponse = (PairingResponse) response;
+            int size = readCount(in);
+            if (size > 0) {
+                List<User> users = new ArrayList<>(size - 1);
+                for (int i = 0; i < size - 1; i++) {
+                    users.add(readUser(in));
+                }
+                pairingResponse.setAvailableUsers(users);
+            }
+            pairingResponse.setInvitation(readEvent(in));
+            pairingResponse.setInvitationResponse(readEvent(in));
+            if ((flags & FLAG_LOBBY_VERSION) != 0) {
+                pairingResponse.setLobbyVersion(readVarLong(in));
+                pairingResponse.setDelta(in.readBoolean());
+                int removedSize = readCount(in);
+                if (removedSize > 0) {
+                    List<String> removedUsers = new ArrayList<>(removedSize - 1);
+                    for (int i = 0; i < removedSize - 1; i++) {
+                        removedUsers.add(readString(in));
+                    }
+                    pairingResponse.setRemovedUsers(removedUsers);
+                }
+            }
+        } else if (kind == KIND_BATCH) {
+            int size = readCount(in);
+            if (size > 0) {
+                List<Response> responses = new ArrayList<>(size - 1);
+                for (int i = 0; i < size - 1; i++) {
+                    responses.add(readResponse(in, true));
+                }
+                ((BatchResponse) response).setResponses(responses);
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Gets the lobby version carried by an UPDATE_PAIRING, from its payload or its JSON data string
+     */
+    private static Long lobbyVersion(Request request) {
+        if (request.getType() != Request.RequestType.UPDATE_PAIRING) {
+            return null;
+        }
+        if (request.getPayload() != null) {
+            return ((Number) request.getPayload()).longValue();
+        }
+        return GSON.fromJson(request.getData(), Long.class);
+    }
+
+    /**
+     * Checks if a pairing response has lobby version fields to write, a full response of a client without version has none
+     */
+    private static boolean hasLobbyVersion(PairingResponse response) {
+        return response.getLobbyVersion() != 0 || response.isDelta() || response.getRemovedUsers() != null;
+    }
+
+    /**
+     * Gets the opcode byte of a type of request
+     */
+    private static int opcode(Request.RequestType type) {
+        if (type == null) {
+            return 0;
+        }
+        switch (type) {
+            case LOGIN: return 1;
+            case REGISTER: return 2;
+            case UPDATE_PAIRING: return 3;
+            case SEND_INVITATION: return 4;
+            case ACCEPT_INVITATION: return 5;
+            case DECLINE_INVITATION: return 6;
+            case ACKNOWLEDGE_RESPONSE: return 7;
+            case REQUEST_MOVE: return 8;
+            case SEND_MOVE: return 9;
+            case ABORT_GAME: return 10;
+            case COMPLETE_GAME: return 11;
+            case SUBSCRIBE_MOVES: return 12;
+            case SUBSCRIBE_PAIRING: return 13;
+            case BATCH: return 14;
+            case HELLO: return 15;
+            case PING: return 16;
+            default: throw new IllegalArgumentException("No opcode for " + type);
+        }
+    }
+
+    /**
+     * Gets the type of request of an opcode byte
+     */
+    private static Request.RequestType requestType(int opcode) throws ProtocolException {
+        switch (opcode) {
+            case 1: return Request.RequestType.LOGIN;
+            case 2: return Request.RequestType.REGISTER;
+            case 3: return Request.RequestType.UPDATE_PAIRING;
+            case 4: return Request.RequestType.SEND_INVITATION;
+            case 5: return Request.RequestType.ACCEPT_INVITATION;
+            case 6: return Request.RequestType.DECLINE_INVITATION;
+            case 7: return Request.RequestType.ACKNOWLEDGE_RESPONSE;
+            case 8: return Request.RequestType.REQUEST_MOVE;
+            case 9: return Request.RequestType.SEND_MOVE;
+            case 10: return Request.RequestType.ABORT_GAME;
+            case 11: return Request.RequestType.COMPLETE_GAME;
+            case 12: return Request.RequestType.SUBSCRIBE_MOVES;
+            case 13: return Request.RequestType.SUBSCRIBE_PAIRING;
+            case 14: return Request.RequestType.BATCH;
+            case 15: return Request.RequestType.HELLO;
+            case 16: return Request.RequestType.PING;
+            default: throw new ProtocolException("Unknown request opcode: " + opcode);
+        }
+    }
+
+    /**
+     * Gets the code byte of an event status
+     */
+    private static int statusCode(Event.EventStatus status) {
+        if (status == null) {
+            return 0;
+        }
+        switch (status) {
+            case PENDING: return 1;
+            case DECLINED: return 2;
+            case ACCEPTED: return 3;
+            case PLAYING: return 4;
+            case COMPLETED: return 5;
+            case ABORTED: return 6;
+            default: throw new IllegalArgumentException("No code for " + status);
+        }
+    }
+
+    /**
+     * Gets the event status of a code byte
+     */
+    private static Event.EventStatus eventStatus(int code) throws ProtocolException {
+        switch (code) {
+            case 0: return null;
+            case 1: return Event.EventStatus.PENDING;
+            case 2: return Event.EventStatus.DECLINED;
+            case 3: return Event.EventStatus.ACCEPTED;
+            case 4: return Event.EventStatus.PLAYING;
+            case 5: return Event.EventStatus.COMPLETED;
+            case 6: return Event.EventStatus.ABORTED;
+            default: throw new ProtocolException("Unknown event status: " + code);
+        }
+    }
+
+    /**
+     * Writes a nullable user
+     */
+    private static void writeUser(DataOutputStream out, User user) throws IOException {
+        out.writeBoolean(user != null);
+        if (user != null) {
+            writeString(out, user.getUsername());
+            writeString(out, user.getPassword());
+            writeString(out, user.getDisplayName());
+            out.writeBoolean(user.isOnline());
+        }
+    }
+
+    /**
+     * Reads a nullable user
+     */
+    private static User readUser(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        return new User(readString(in), readString(in), readString(in), in.readBoolean());
+    }
+
+    /**
+     * Writes a nullable event
+     */
+    private static void writeEvent(DataOutputStream out, Event event) throws IOException {
+        out.writeBoolean(event != null);
+        if (event != null) {
+            writeVarInt(out, event.getEventId());
+            writeString(out, event.getSender());
+            writeString(out, event.getOpponent());
+            out.writeByte(statusCode(event.getStatus()));
+            writeString(out, event.getTurn());
+            writeSignedVarInt(out, event.getMove());
+        }
+    }
+
+    /**
+     * Reads a nullable event
+     */
+    private static Event readEvent(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        return new Event(readVarInt(in), readString(in), readString(in), eventStatus(in.readUnsignedByte()),
+                readString(in), readSignedVarInt(in));
+    }
+
+    /**
+     * Writes a nullable string as its UTF-8 length plus one, then its bytes
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a nullable string
+     */
+    private static String readString(DataInputStream in) throws IOException {
+        int length = readCount(in);
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length - 1];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a length or a count plus one, as written for nullable strings and lists
+     * Every byte or element takes at least one byte, so it can not exceed the bytes left in the frame
+     */
+    private static int readCount(DataInputStream in) throws IOException {
+        int count = readVarInt(in);
+        if (count < 0 || count - 1 > in.available()) {
+            throw new ProtocolException("Length exceeds the frame: " + count);
+        }
+        return count;
+    }
+
+    /**
+     * Writes a nullable signed integer, 0 stands for null
+     */
+    private static void writeNullableInt(DataOutputStream out, Integer value) throws IOException {
+        writeVarInt(out, value == null ? 0 : ((value << 1) ^ (value >> 31)) + 1);
+    }
+
+    /**
+     * Reads a nullable signed integer
+     */
+    private static Integer readNullableInt(DataInputStream in) throws IOException {
+        int encoded = readVarInt(in);
+        if (encoded == 0) {
+            return null;
+        }
+        int zigzag = encoded - 1;
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    /**
+     * Writes a signed integer as a zigzag varint
+     */
+    private static void writeSignedVarInt(DataOutputStream out, int value) throws IOException {
+        writeVarInt(out, (value << 1) ^ (value >> 31));
+    }
+
+    /**
+     * Reads a zigzag varint
+     */
+    private static int readSignedVarInt(DataInputStream in) throws IOException {
+        int zigzag = readVarInt(in);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    /**
+     * Writes an integer as an unsigned varint, 7 bits per byte
+     */
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Writes a non-negative long as an unsigned varint, 7 bits per byte
+     */
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /**
+     * Reads an unsigned varint long
+     */
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new ProtocolException("Malformed varint");
+    }
+
+    /**
+     * Reads an unsigned varint
+     */
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new ProtocolException("Malformed varint");
+    }
+}
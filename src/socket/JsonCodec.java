@@ -0,0 +1,275 @@
+package socket;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The `JsonCodec` class holds the {@link Gson} instance shared by every connection for the JSON protocols.
+ *
+ * Building a Gson instance costs far more than encoding a message, so it is built once instead of per session.
+ * Fields are still mapped by reflection, the JSON is the same as the one produced by
+ * {@code new GsonBuilder().serializeNulls().create()}, so existing clients are unaffected.
+ * The responses of a batch also carry a {@link #RESPONSE_TYPE} field, ignored by other clients,
+ * so they are read back into the response class they were written from.
+ * A request may carry its data as a structured "payload" field instead of the JSON string of its data field,
+ * read straight into the type given by {@link #payloadType(Request.RequestType)}.
+ * A {@link Gson} instance is thread-safe once created.
+ */
+public final class JsonCodec {
+
+    /**
+     * Name of the field giving the response class of a response in a batch
+     */
+    private static final String RESPONSE_TYPE = "responseType";
+
+    /**
+     * Name of the field carrying the typed payload of a request
+     */
+    private static final String PAYLOAD = "payload";
+
+    /**
+     * The shared instance, nulls are serialized like the instance every session used to build
+     */
+    private static final Gson GSON = new GsonBuilder()
+            .serializeNulls()
+            .registerTypeAdapterFactory(new BatchResponseAdapterFactory())
+            .registerTypeAdapterFactory(new RequestAdapterFactory())
+            .create();
+
+    /**
+     * The class only has static methods
+     */
+    private JsonCodec() {
+    }
+
+    /**
+     * Getter for the shared Gson instance
+     *
+     * @return The Gson instance used for the protocol and model classes.
+     */
+    public static Gson getGson() {
+        return GSON;
+    }
+
+    /**
+     * Gets the response class named by the {@link #RESPONSE_TYPE} of a response in a batch
+     *
+     * @param responseType The name of the class, or null.
+     * @return The response class, {@link Response} if the name is not known.
+     */
+    private static Class<? extends Response> responseClass(String responseType) {
+        if (responseType == null) {
+            return Response.class;
+        }
+        switch (responseType) {
+            case "GamingResponse": return GamingResponse.class;
+            case "PairingResponse": return PairingResponse.class;
+            case "BatchResponse": return BatchResponse.class;
+            default: return Response.class;
+        }
+    }
+
+    /**
+     * Gets the type of the payload carried by a type of request in the JSON protocols
+     * Same as {@link BinaryCodec#payloadType(Request.RequestType)}, plus the lobby version of an UPDATE_PAIRING
+     * which the binary layout carries in the request header instead
+     *
+     * @param type The type of request.
+     * @return The payload type, or null if the request carries no payload.
+     */
+    private static Type payloadType(Request.RequestType type) {
+        if (type == Request.RequestType.UPDATE_PAIRING) {
+            return Long.class;
+        }
+        return BinaryCodec.payloadType(type);
+    }
+
+    /**
+     * Gets the {@link #RESPONSE_TYPE} of a response in a batch, the protocol class it is read back into
+     * Subclasses, e.g. the read-only constant responses of the server, are tagged with the protocol class they extend
+     *
+     * @param response The response.
+     * @return The simple name of the protocol class of the response.
+     */
+    private static String responseType(Response response) {
+        if (response instanceof GamingResponse) {
+            return "GamingResponse";
+        } else if (response instanceof PairingResponse) {
+            return "PairingResponse";
+        } else if (response instanceof BatchResponse) {
+            return "BatchResponse";
+        }
+        return "Response";
+    }
+
+    /**
+     * Tags the responses of a {@link BatchResponse} with their class, and reads them back into that class
+     * The rest of the batch is written and read by the reflective adapter of the class
+     */
+    private static class BatchResponseAdapterFactory implements TypeAdapterFactory {
+
+        /**
+         * Creates the adapter of the {@link BatchResponse} class
+         *
+         * @param gson The Gson instance.
+         * @param type The type to create an adapter for.
+         * @return The adapter, or null for any other type.
+         */
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            if (type.getRawType() != BatchResponse.class) {
+                return null;
+            }
+            TypeAdapter<BatchResponse> delegate = gson.getDelegateAdapter(this, TypeToken.get(BatchResponse.class));
+            TypeAdapter<JsonElement> elementAdapter = gson.getAdapter(JsonElement.class);
+            return (TypeAdapter<T>) new TypeAdapter<BatchResponse>() {
+                @Override
+                public void write(JsonWriter out, BatchResponse batch) throws IOException {
+                    JsonElement tree = delegate.toJsonTree(batch);
+                    if (batch != null && batch.getResponses() != null) {
+                        JsonArray responses = tree.getAsJsonObject().getAsJsonArray("responses");
+                        for (int i = 0; i < responses.size(); i++) {
+                            Response response = batch.getResponses().get(i);
+                            if (response != null) {
+                                responses.get(i).getAsJsonObject().addProperty(RESPONSE_TYPE, responseType(response));
+                            }
+                        }
+                    }
+                    elementAdapter.write(out, tree);
+                }
+
+                @Override
+                public BatchResponse read(JsonReader in) throws IOException {
+                    JsonElement tree = elementAdapter.read(in);
+                    BatchResponse batch = delegate.fromJsonTree(tree);
+                    JsonElement responses = tree.isJsonObject() ? tree.getAsJsonObject().get("responses") : null;
+                    if (batch != null && responses != null && responses.isJsonArray()) {
+                        List<Response> typed = new ArrayList<>(responses.getAsJsonArray().size());
+                        for (JsonElement response : responses.getAsJsonArray()) {
+                            JsonElement responseType = response.isJsonObject() ? ((JsonObject) response).get(RESPONSE_TYPE) : null;
+                            typed.add(gson.fromJson(response, responseClass(responseType != null && responseType.isJsonPrimitive()
+                                    ? responseType.getAsString() : null)));
+                        }
+                        batch.setResponses(typed);
+                    }
+                    return batch;
+                }
+            };
+        }
+    }
+
+    /**
+     * Writes the typed payload of a {@link Request} as its "payload" field, and reads it back into its type
+     * Requests are read in one streaming pass, the values of the fields by the adapters of their types;
+     * a payload before the "type" field is kept as a tree until the type is known
+     */
+    private static class RequestAdapterFactory implements TypeAdapterFactory {
+
+        /**
+         * Creates the adapter of the {@link Request} class
+         *
+         * @param gson The Gson instance.
+         * @param type The type to create an adapter for.
+         * @return The adapter, or null for any other type.
+         */
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            if (type.getRawType() != Request.class) {
+                return null;
+            }
+            TypeAdapter<Request> delegate = gson.getDelegateAdapter(this, TypeToken.get(Request.class));
+            TypeAdapter<JsonElement> elementAdapter = gson.getAdapter(JsonElement.class);
+            TypeAdapter<Request.RequestType> typeAdapter = gson.getAdapter(Request.RequestType.class);
+            TypeAdapter<String> stringAdapter = gson.getAdapter(String.class);
+            TypeAdapter<Integer> integerAdapter = gson.getAdapter(Integer.class);
+            return (TypeAdapter<T>) new TypeAdapter<Request>() {
+                @Override
+                public void write(JsonWriter out, Request request) throws IOException {
+                    if (request == null || request.getPayload() == null) {
+                        delegate.write(out, request);
+                        return;
+                    }
+                    JsonElement tree = delegate.toJsonTree(request);
+                    Type payloadType = request.getType() != null ? payloadType(request.getType()) : null;
+                    tree.getAsJsonObject().add(PAYLOAD, gson.toJsonTree(request.getPayload(),
+                            payloadType != null ? payloadType : request.getPayload().getClass()));
+                    elementAdapter.write(out, tree);
+                }
+
+                @Override
+                public Request read(JsonReader in) throws IOException {
+                    if (in.peek() == JsonToken.NULL) {
+                        in.nextNull();
+                        return null;
+                    }
+                    Request request = new Request();
+                    JsonElement pendingPayload = null;
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        switch (in.nextName()) {
+                            case "type":
+                                request.setType(typeAdapter.read(in));
+                                break;
+                            case "data":
+                                request.setData(stringAdapter.read(in));
+                                break;
+                            case "requestId":
+                                request.setRequestId(integerAdapter.read(in));
+                                break;
+                            case PAYLOAD:
+                                if (request.getType() != null) {
+                                    request.setPayload(readPayload(in, request.getType()));
+                                } else {
+                                    pendingPayload = elementAdapter.read(in); // type comes later, decoded once it is known
+                                }
+                                break;
+                            default:
+                                in.skipValue();
+                        }
+                    }
+                    in.endObject();
+                    if (pendingPayload != null && request.getType() != null) {
+                        Type payloadType = payloadType(request.getType());
+                        if (payloadType != null) {
+                            request.setPayload(gson.fromJson(pendingPayload, payloadType));
+                        }
+                    }
+                    return request;
+                }
+
+                /**
+                 * Reads the payload straight into the type carried by the request type
+                 *
+                 * @param in The reader, positioned on the payload.
+                 * @param requestType The type of the request.
+                 * @return The typed payload, or null if the request type carries none.
+                 * @throws IOException When the payload can not be read.
+                 */
+                private Object readPayload(JsonReader in, Request.RequestType requestType) throws IOException {
+                    Type payloadType = payloadType(requestType);
+                    if (payloadType == null) {
+                        in.skipValue();
+                        return null;
+                    }
+                    return gson.getAdapter(TypeToken.get(payloadType)).read(in);
+                }
+            };
+        }
+    }
+}
@@ -6,12 +6,29 @@ import java.util.List;
 
 /**
  * Server response to an UPDATE_PAIRING request. It is a subclass of Response.java.
+ * A client that sends the lobby version it has gets only the changes since that version,
+ * or an empty delta with the message "Unchanged" when nothing changed.
  */
 public class PairingResponse extends Response {
     private List<User> availableUsers;
     private Event invitation;
     private Event invitationResponse;
 
+    /**
+     * Version of the lobby the available users correspond to, sent back with the next UPDATE_PAIRING to get only the changes
+     */
+    private long lobbyVersion;
+
+    /**
+     * If {@link #availableUsers} only holds the users added or updated since the version sent by the client
+     */
+    private boolean delta;
+
+    /**
+     * Usernames of the users no longer available since the version sent by the client, null unless {@link #delta}
+     */
+    private List<String> removedUsers;
+
     /**
      * Default constructor for the class. Must call the constructor of the super class.
      */
@@ -89,4 +106,58 @@ public class PairingResponse extends Response {
     public void setInvitationResponse(Event invitationResponse) {
         this.invitationResponse = invitationResponse;
     }
+
+    /**
+     * Getter for the lobby version.
+     *
+     * @return The version of the lobby the available users correspond to.
+     */
+    public long getLobbyVersion() {
+        return lobbyVersion;
+    }
+
+    /**
+     * Setter for the lobby version.
+     *
+     * @param lobbyVersion The version of the lobby the available users correspond to.
+     */
+    public void setLobbyVersion(long lobbyVersion) {
+        this.lobbyVersion = lobbyVersion;
+    }
+
+    /**
+     * Getter for the delta flag.
+     *
+     * @return true if the available users only hold the changes since the version sent by the client.
+     */
+    public boolean isDelta() {
+        return delta;
+    }
+
+    /**
+     * Setter for the delta flag.
+     *
+     * @param delta If the available users only hold the changes since the version sent by the client.
+     */
+    public void setDelta(boolean delta) {
+        this.delta = delta;
+    }
+
+    /**
+     * Getter for the removed users.
+     *
+     * @return The usernames of the users no longer available, null unless this is a delta.
+     */
+    public List<String> getRemovedUsers() {
+        return removedUsers;
+    }
+
+    /**
+     * Setter for the removed users.
+     *
+     * @param removedUsers The usernames of the users no longer available.
+     */
+    public void setRemovedUsers(List<String> removedUsers) {
+        this.removedUsers = removedUsers;
+    }
 }
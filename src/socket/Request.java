@@ -19,12 +19,29 @@ public class Request {
         REQUEST_MOVE,
         SEND_MOVE,
         ABORT_GAME,
-        COMPLETE_GAME
+        COMPLETE_GAME,
+        SUBSCRIBE_MOVES,
+        SUBSCRIBE_PAIRING,
+        BATCH,
+        HELLO,
+        PING
     }
 
     private RequestType type;
     private String data;
 
+    /**
+     * Optional identifier chosen by the client, echoed on the {@link Response} so pipelined requests can be matched
+     */
+    private Integer requestId;
+
+    /**
+     * The data already decoded into its typed value, set by the codecs (e.g. {@link BinaryCodec})
+     * Sent as the "payload" field by {@link JsonCodec}, so it is not encoded twice like {@link #data}.
+     * Transient so that reflective Gson instances keep ignoring it
+     */
+    private transient Object payload;
+
     /**
      * Default constructor for the `Request` class.
      */
@@ -42,6 +59,19 @@ public class Request {
         this.data = data;
     }
 
+    /**
+     * Parameterized constructor for the `Request` class, for clients pipelining many requests on one connection.
+     *
+     * @param type      The type of request (e.g., LOGIN, REGISTER).
+     * @param data      The data associated with the request.
+     * @param requestId The identifier echoed on the response to this request.
+     */
+    public Request(RequestType type, String data, Integer requestId) {
+        this.type = type;
+        this.data = data;
+        this.requestId = requestId;
+    }
+
     /**
      * Gets the type of the request.
      *
@@ -77,4 +107,40 @@ public class Request {
     public void setData(String data) {
         this.data = data;
     }
+
+    /**
+     * Gets the identifier of the request.
+     *
+     * @return The request identifier, or null if the client did not set one.
+     */
+    public Integer getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * Sets the identifier of the request.
+     *
+     * @param requestId The identifier echoed on the response to this request.
+     */
+    public void setRequestId(Integer requestId) {
+        this.requestId = requestId;
+    }
+
+    /**
+     * Gets the data already decoded into its typed value.
+     *
+     * @return The typed data, or null if only {@link #getData()} is set.
+     */
+    public Object getPayload() {
+        return payload;
+    }
+
+    /**
+     * Sets the data already decoded into its typed value.
+     *
+     * @param payload The typed data (e.g., a User for LOGIN or an Integer for SEND_MOVE).
+     */
+    public void setPayload(Object payload) {
+        this.payload = payload;
+    }
 }
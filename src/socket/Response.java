@@ -16,6 +16,11 @@ public class Response {
     private ResponseStatus status;
     private String message;
 
+    /**
+     * Identifier of the {@link Request} this response answers, null for messages pushed by the server
+     */
+    private Integer requestId;
+
     /**
      * Default constructor for the `Response` class.
      */
@@ -68,4 +73,22 @@ public class Response {
     public void setMessage(String message) {
         this.message = message;
     }
+
+    /**
+     * Gets the identifier of the request this response answers.
+     *
+     * @return The request identifier, or null if the request had none or the message was pushed by the server.
+     */
+    public Integer getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * Sets the identifier of the request this response answers.
+     *
+     * @param requestId The identifier of the request.
+     */
+    public void setRequestId(Integer requestId) {
+        this.requestId = requestId;
+    }
 }
@@ -0,0 +1,57 @@
+package socket;
+
+/**
+ * The `WireProtocol` enum lists the frame formats a client can negotiate with a HELLO request.
+ * Every connection starts with {@link #JSON}; after a successful HELLO both sides switch to the requested format.
+ */
+public enum WireProtocol {
+    /**
+     * JSON text written with `DataOutputStream.writeUTF`, an unsigned 16-bit length followed by the body
+     */
+    JSON("json/1"),
+
+    /**
+     * JSON text streamed as UTF-8, a 32-bit length followed by the body, without the 64 KB limit of {@link #JSON}
+     */
+    JSON_STREAM("json/2"),
+
+    /**
+     * Compact binary encoding of {@link BinaryCodec}, a 32-bit length followed by the body
+     */
+    BINARY("binary/1");
+
+    private final String protocolName;
+
+    /**
+     * Constructor for the `WireProtocol` enum.
+     *
+     * @param protocolName The name used for the protocol in the HELLO request.
+     */
+    WireProtocol(String protocolName) {
+        this.protocolName = protocolName;
+    }
+
+    /**
+     * Gets the name used for the protocol in the HELLO request.
+     *
+     * @return The protocol name (e.g., binary/1).
+     */
+    public String getProtocolName() {
+        return protocolName;
+    }
+
+    /**
+     * Finds a protocol by the name used in the HELLO request.
+     *
+     * @param protocolName The protocol name (e.g., binary/1).
+     * @return The protocol, or null if no protocol has that name.
+     */
+    public static WireProtocol fromProtocolName(String protocolName) {
+        for (WireProtocol protocol : values()) {
+            if (protocol.protocolName.equals(protocolName)) {
+                return protocol;
+            }
+        }
+        return null;
+    }
+}
@@ -4,8 +4,14 @@
  * This package includes the following classes:
  * - `GamingResponse`: Represents a response specific to gaming-related operations, extending the `Response` class.
  *   It provides functionality for handling gaming responses, including move and activity status.
+ * - `PairingResponse`: Represents the server response to a pairing update, with available users and invitations.
+ * - `BatchResponse`: Represents the server response to a batch of requests, holding one response per sub-request.
  * - `Request`: Represents a request made to a server or system, including a request type and associated data.
  * - `Response`: Represents a response sent in response to a request, including a response status and message.
+ * - `WireProtocol`: Lists the frame formats a client can negotiate with a HELLO request.
+ * - `BinaryCodec`: Encodes requests and responses in the compact binary protocol.
+ * - `JsonCodec`: Holds the Gson instance shared by every connection, tagging the responses of a batch with their class
+ *   and reading typed request payloads.
  *
  * The classes in this package are designed for managing socket communication and request/response interactions
  * within your application.
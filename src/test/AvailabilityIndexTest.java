@@ -0,0 +1,70 @@
+package test;
+import model.Event;
+import model.User;
+import server.AvailabilityIndex;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The `AvailabilityIndexTest` class is responsible for testing the functionality of the `AvailabilityIndex` class.
+ */
+public class AvailabilityIndexTest {
+
+    /**
+     * The main method that runs the test methods for the `AvailabilityIndex` class.
+     *
+     * @param args Command-line arguments (not used in this example).
+     */
+    public static void main(String[] args) {
+        User user1 = new User("user1", "1234", "Smith Alex", true);
+        User user2 = new User("user2", "1234", "Bob Johnson", true);
+        User user3 = new User("user3", "1234", "Ahmad Suleiman", true);
+
+        /*
+         * Tests online users
+         */
+        AvailabilityIndex index1 = new AvailabilityIndex();
+        index1.updateUser(user3);
+        index1.updateUser(user1);
+        index1.updateUser(user2);
+        List<User> users = index1.getAvailableUsers("user2");
+
+        System.out.println("Index 1: Testing online users");
+        System.out.println(((users.size() == 2 && users.get(0).getUsername().equals("user1") && users.get(1).getUsername().equals("user3")) ? "PASSED":"FAILED") + ": sorted, user left out");
+        System.out.println((users.get(0).getPassword().isEmpty() ? "PASSED":"FAILED") + ": password hidden");
+        index1.updateUser(new User("user3", "1234", "Ahmad Suleiman", false));
+        System.out.println((index1.getAvailableUsers("").size() == 2 ? "PASSED":"FAILED") + ": offline user removed");
+        index1.setAllUsersOffline();
+        System.out.println((index1.getAvailableUsers("").isEmpty() ? "PASSED":"FAILED") + ": all users offline");
+
+        /*
+         * Tests busy users
+         */
+        AvailabilityIndex index2 = new AvailabilityIndex();
+        index2.load(Arrays.asList(user1, user2, user3), Collections.emptyList());
+        index2.updateEvent(new Event(1, "user1", "user2", Event.EventStatus.PENDING, null, -1));
+
+        System.out.println("Index 2: Testing busy users");
+        System.out.println(((index2.getAvailableUsers("").size() == 3 && index2.isUserAvailable("user1")) ? "PASSED":"FAILED") + ": pending invitation keeps users available");
+        index2.updateEvent(new Event(1, "user1", "user2", Event.EventStatus.ACCEPTED, null, -1));
+        System.out.println(((index2.getAvailableUsers("").size() == 1 && !index2.isUserAvailable("user2")) ? "PASSED":"FAILED") + ": accepted invitation makes users busy");
+        index2.updateEvent(new Event(1, "user1", "user2", Event.EventStatus.COMPLETED, "user1", 4));
+        System.out.println(((index2.getAvailableUsers("").size() == 3 && index2.isUserAvailable("user2")) ? "PASSED":"FAILED") + ": completed game frees users");
+        index2.updateEvent(new Event(2, "user3", "user1", Event.EventStatus.PLAYING, null, -1));
+        index2.abortAllUserEvents("user3");
+        System.out.println(((index2.getAvailableUsers("").size() == 3 && index2.isUserAvailable("user1")) ? "PASSED":"FAILED") + ": aborted game frees both users");
+
+        /*
+         * Tests loading
+         */
+        AvailabilityIndex index3 = new AvailabilityIndex();
+        index3.load(Arrays.asList(user1, user2), Collections.singletonList(new Event(3, "user1", "user3", Event.EventStatus.PLAYING, null, -1)));
+
+        System.out.println("Index 3: Testing loading");
+        System.out.println(((index3.getAvailableUsers("").size() == 1 && !index3.isUserAvailable("user3")) ? "PASSED":"FAILED") + ": busy events loaded");
+        index3.clear();
+        System.out.println(((index3.getAvailableUsers("").isEmpty() && index3.isUserAvailable("user1")) ? "PASSED":"FAILED") + ": cleared");
+    }
+}
@@ -0,0 +1,143 @@
+package test;
+import model.Event;
+import model.User;
+import socket.BatchResponse;
+import socket.BinaryCodec;
+import socket.PairingResponse;
+import socket.Request;
+import socket.Response;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The `BinaryCodecTest` class is responsible for testing the round trips of the `BinaryCodec` class,
+ * lobby versions included, and the rejection of malformed frames.
+ */
+public class BinaryCodecTest {
+
+    /**
+     * The main method that runs the test methods for the `BinaryCodec` class.
+     *
+     * @param args Command-line arguments (not used in this example).
+     * @throws IOException if a request or response can not be encoded or decoded
+     */
+    public static void main(String[] args) throws IOException {
+
+        /*
+         * Tests the round trip of a batch
+         */
+        System.out.println("BinaryCodec 1: Testing BATCH round trip");
+        Request batch = new Request(Request.RequestType.BATCH, null, 1);
+        batch.setPayload(Arrays.asList(new Request(Request.RequestType.SEND_MOVE, "4", 2),
+                new Request(Request.RequestType.SEND_INVITATION, "\"user2\"")));
+        Request decoded = BinaryCodec.decodeRequest(BinaryCodec.encodeRequest(batch));
+        List<?> subRequests = (List<?>) decoded.getPayload();
+        System.out.println((subRequests.size() == 2 && Integer.valueOf(4).equals(((Request) subRequests.get(0)).getPayload())
+                && "user2".equals(((Request) subRequests.get(1)).getPayload()) ? "PASSED":"FAILED") + ": sub-requests kept");
+
+        /*
+         * Tests lengths and counts larger than the frame
+         */
+        System.out.println("BinaryCodec 2: Testing lengths beyond the frame");
+        byte[] huge = {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0x7F};
+        System.out.println((rejectsRequest(concat(new byte[]{4, 0}, huge)) ? "PASSED":"FAILED") + ": string length");
+        System.out.println((rejectsRequest(concat(new byte[]{14, 0}, huge)) ? "PASSED":"FAILED") + ": batch count");
+        System.out.println((rejectsRequest(new byte[]{4, 0, 5, 'a'}) ? "PASSED":"FAILED") + ": string cut short");
+        System.out.println((rejectsResponse(concat(new byte[]{2, 0, 1, 0}, huge)) ? "PASSED":"FAILED") + ": user count");
+        System.out.println((rejectsResponse(concat(new byte[]{3, 0, 1, 0}, huge)) ? "PASSED":"FAILED") + ": response count");
+
+        /*
+         * Tests nested batches
+         */
+        System.out.println("BinaryCodec 3: Testing nested batches");
+        System.out.println((rejectsRequest(new byte[]{14, 0, 2, 14, 0, 0}) ? "PASSED":"FAILED") + ": nested batch request");
+        System.out.println((rejectsResponse(new byte[]{3, 0, 1, 0, 2, 3, 0, 1, 0, 0}) ? "PASSED":"FAILED") + ": nested batch response");
+        BatchResponse batchResponse = new BatchResponse(Response.ResponseStatus.SUCCESS, "Batch Handled",
+                Arrays.asList(new Response(Response.ResponseStatus.SUCCESS, "Game Invitation Sent")));
+        BatchResponse decodedBatch = (BatchResponse) BinaryCodec.decodeResponse(BinaryCodec.encodeResponse(batchResponse));
+        System.out.println((decodedBatch.getResponses().size() == 1 ? "PASSED":"FAILED") + ": flat batch response");
+
+        User user = new User("user1", "", "Smith Alex", true);
+        Event event = new Event(7, "user2", "user1", Event.EventStatus.PENDING, null, -1);
+
+        /*
+         * Tests the lobby version of a request
+         */
+        System.out.println("BinaryCodec 4: Testing UPDATE_PAIRING lobby version");
+        Request withPayload = new Request(Request.RequestType.UPDATE_PAIRING, null, 3);
+        withPayload.setPayload(300L);
+        decoded = BinaryCodec.decodeRequest(BinaryCodec.encodeRequest(withPayload));
+        System.out.println((Long.valueOf(300).equals(decoded.getPayload()) && decoded.getRequestId() == 3 ? "PASSED":"FAILED") + ": version from payload");
+        decoded = BinaryCodec.decodeRequest(BinaryCodec.encodeRequest(new Request(Request.RequestType.UPDATE_PAIRING, "42")));
+        System.out.println((Long.valueOf(42).equals(decoded.getPayload()) ? "PASSED":"FAILED") + ": version from data");
+        byte[] withoutVersion = BinaryCodec.encodeRequest(new Request(Request.RequestType.UPDATE_PAIRING, null));
+        decoded = BinaryCodec.decodeRequest(withoutVersion);
+        System.out.println((withoutVersion.length == 2 && decoded.getPayload() == null ? "PASSED":"FAILED") + ": no version, layout unchanged");
+
+        /*
+         * Tests the lobby version of a response
+         */
+        System.out.println("BinaryCodec 5: Testing PairingResponse lobby version");
+        PairingResponse delta = new PairingResponse(Response.ResponseStatus.SUCCESS, null,
+                Collections.singletonList(user), event, null);
+        delta.setLobbyVersion(1L << 40);
+        delta.setDelta(true);
+        delta.setRemovedUsers(Arrays.asList("user3", "user4"));
+        PairingResponse decodedDelta = (PairingResponse) BinaryCodec.decodeResponse(BinaryCodec.encodeResponse(delta));
+        System.out.println((decodedDelta.getLobbyVersion() == 1L << 40 && decodedDelta.isDelta()
+                && decodedDelta.getRemovedUsers().equals(Arrays.asList("user3", "user4")) ? "PASSED":"FAILED") + ": delta round trip");
+        System.out.println((decodedDelta.getAvailableUsers().equals(delta.getAvailableUsers())
+                && decodedDelta.getInvitation().equals(event) ? "PASSED":"FAILED") + ": pairing fields kept");
+        PairingResponse full = new PairingResponse(Response.ResponseStatus.SUCCESS, null,
+                Collections.singletonList(user), null, null);
+        PairingResponse decodedFull = (PairingResponse) BinaryCodec.decodeResponse(BinaryCodec.encodeResponse(full));
+        System.out.println((decodedFull.getLobbyVersion() == 0 && !decodedFull.isDelta()
+                && decodedFull.getRemovedUsers() == null ? "PASSED":"FAILED") + ": no version, full response");
+    }
+
+    /**
+     * Checks that a request is rejected as malformed
+     * @param body The encoded request
+     * @return true if decoding fails with a {@link ProtocolException}
+     * @throws IOException if decoding fails with another error
+     */
+    private static boolean rejectsRequest(byte[] body) throws IOException {
+        try {
+            BinaryCodec.decodeRequest(body);
+            return false;
+        } catch (ProtocolException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Checks that a response is rejected as malformed
+     * @param body The encoded response
+     * @return true if decoding fails with a {@link ProtocolException}
+     * @throws IOException if decoding fails with another error
+     */
+    private static boolean rejectsResponse(byte[] body) throws IOException {
+        try {
+            BinaryCodec.decodeResponse(body);
+            return false;
+        } catch (ProtocolException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Joins two byte arrays
+     * @param first The leading bytes
+     * @param second The trailing bytes
+     * @return the bytes of both arrays
+     */
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] joined = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, joined, first.length, second.length);
+        return joined;
+    }
+}
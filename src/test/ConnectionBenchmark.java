@@ -0,0 +1,75 @@
+package test;
+
+import server.ServerMetrics;
+import server.SocketServer;
+import socket.Request;
+import socket.Response;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The `ConnectionBenchmark` class compares the connection engines of the `SocketServer`.
+ * It opens many mostly-idle connections and measures the request latency, live threads and heap used.
+ * Run it once per mode, e.g. `ConnectionBenchmark VIRTUAL 5000`, since the server runs until the JVM exits.
+ * VIRTUAL mode needs Java 21 or later, the server refuses to start on older JVMs.
+ */
+public class ConnectionBenchmark {
+
+    /**
+     * The main method that runs the benchmark
+     *
+     * @param args The server mode (BLOCKING, NIO or VIRTUAL), the number of connections and the number of request rounds
+     */
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "BLOCKING";
+        int connections = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        Thread serverThread = new Thread(() -> SocketServer.main(new String[]{mode}));
+        serverThread.setDaemon(true);
+        serverThread.start();
+        Thread.sleep(1000);
+
+        // Open all connections
+        long start = System.nanoTime();
+        List<SocketClientHelper> clients = new ArrayList<>();
+        for (int i = 0; i < connections; i++) {
+            clients.add(new SocketClientHelper());
+        }
+        long connectMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // Send a request that does not touch the database on every connection
+        Request request = new Request(Request.RequestType.UPDATE_PAIRING, null);
+        long[] latencies = new long[connections * rounds];
+        int failures = 0;
+        for (int round = 0; round < rounds; round++) {
+            for (int i = 0; i < connections; i++) {
+                long requestStart = System.nanoTime();
+                Response response = clients.get(i).sendRequest(request, Response.class);
+                latencies[round * connections + i] = System.nanoTime() - requestStart;
+                if (response == null) {
+                    failures++;
+                }
+            }
+        }
+        Arrays.sort(latencies);
+
+        Runtime runtime = Runtime.getRuntime();
+        System.out.println("Mode: " + mode);
+        System.out.println("Connections: " + connections + " (" + failures + " failed requests)");
+        System.out.println("Connect Time: " + connectMillis + " ms");
+        System.out.println("Latency p50: " + latencies[latencies.length / 2] / 1000 + " us");
+        System.out.println("Latency p99: " + latencies[(int) (latencies.length * 0.99)] / 1000 + " us");
+        System.out.println("Live Threads: " + ManagementFactory.getThreadMXBean().getThreadCount());
+        System.out.println("Heap Used: " + (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024) + " MB");
+        System.out.println(ServerMetrics.getInstance());
+
+        for (SocketClientHelper client : clients) {
+            client.close();
+        }
+        System.exit(0);
+    }
+}
@@ -0,0 +1,299 @@
+package test;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import model.User;
+import server.DatabaseHelper;
+import server.ServerConfig;
+import server.ServerMode;
+import server.SessionRegistry;
+import server.ServerMetrics;
+import server.SocketServer;
+import socket.BatchResponse;
+import socket.GamingResponse;
+import socket.PairingResponse;
+import socket.Request;
+import socket.Response;
+import socket.WireProtocol;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The GamingTest class contains a series of test cases for the game move functionality.
+ */
+public class GamingTest {
+    public static void main(String[] args) throws Exception {
+        System.setProperty("tictactoe.idleTimeoutMillis", "2000");
+        System.setProperty("tictactoe.maxSessions", "20");
+        System.setProperty("tictactoe.acceptorThreads", "2");
+        System.setProperty("tictactoe.reusePort", "true");
+        DatabaseHelper.getInstance().truncateTables();
+        ServerConfig config = ServerConfig.fromSystemProperties();
+        if (args.length > 0) {
+            config.setMode(ServerMode.valueOf(args[0].trim().toUpperCase()));
+        }
+        SocketServer socketServer = new SocketServer(config);
+        socketServer.start();
+        Thread.sleep(1000);
+
+        // Used for Serialization
+        Gson gson = new GsonBuilder().serializeNulls().create();
+
+        // Users
+        User user1 = new User("user1", "1234", "Smith Alex", false);
+        User user2 = new User("user2", "1234", "Bob Johnson", false);
+
+        //SocketClients
+        SocketClientHelper scUser1 = new SocketClientHelper();
+        SocketClientHelper scUser2 = new SocketClientHelper();
+
+        // Register, login and pair user1 with user2
+        scUser1.sendRequest(new Request(Request.RequestType.REGISTER, gson.toJson(user1)), Response.class);
+        scUser2.sendRequest(new Request(Request.RequestType.REGISTER, gson.toJson(user2)), Response.class);
+        scUser1.sendRequest(new Request(Request.RequestType.LOGIN, gson.toJson(user1)), Response.class);
+        scUser2.sendRequest(new Request(Request.RequestType.LOGIN, gson.toJson(user2)), Response.class);
+        scUser1.sendRequest(new Request(Request.RequestType.SEND_INVITATION, gson.toJson(user2.getUsername())), Response.class);
+        PairingResponse pairingResponse = scUser2.sendRequest(new Request(Request.RequestType.UPDATE_PAIRING, null), PairingResponse.class);
+        int eventId = pairingResponse.getInvitation().getEventId();
+        scUser2.sendRequest(new Request(Request.RequestType.ACCEPT_INVITATION, gson.toJson(eventId)), Response.class);
+        scUser1.sendRequest(new Request(Request.RequestType.ACKNOWLEDGE_RESPONSE, gson.toJson(eventId)), Response.class);
+
+        // Test 1
+        System.out.println("Test 1: Testing polled move");
+        scUser1.sendRequest(new Request(Request.RequestType.SEND_MOVE, gson.toJson(4)), Response.class);
+        GamingResponse gamingResponse = scUser2.sendRequest(new Request(Request.RequestType.REQUEST_MOVE, null), GamingResponse.class);
+        System.out.println(((gamingResponse.getMove() == 4 && gamingResponse.isActive()) ? "PASSED":"FAILED") + ": move 4 received");
+        Response rejected = scUser2.sendRequest(new Request(Request.RequestType.SEND_MOVE, null), Response.class);
+        System.out.println(((rejected != null && rejected.getMessage().equals("Invalid Request")) ? "PASSED":"FAILED") + ": missing move rejected");
+
+        // Test 2
+        System.out.println("Test 2: Testing long-polled move");
+        GamingResponse[] longPollResponse = new GamingResponse[1];
+        Thread longPoll = new Thread(() -> longPollResponse[0] = scUser2.sendRequest(new Request(Request.RequestType.REQUEST_MOVE, gson.toJson(5000)), GamingResponse.class));
+        longPoll.start();
+        Thread.sleep(300);
+        scUser1.sendRequest(new Request(Request.RequestType.SEND_MOVE, gson.toJson(8)), Response.class);
+        longPoll.join();
+        System.out.println(((longPollResponse[0].getMove() == 8 && longPollResponse[0].isActive()) ? "PASSED":"FAILED") + ": move 8 received");
+
+        // Test 3
+        System.out.println("Test 3: Testing pipelined requests");
+        List<Request> pipelined = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            pipelined.add(new Request(Request.RequestType.REQUEST_MOVE, null, i));
+        }
+        List<GamingResponse> pipelinedResponses = scUser2.sendPipelinedRequests(pipelined, GamingResponse.class);
+        boolean echoed = pipelinedResponses.size() == 3;
+        for (int i = 0; i < pipelinedResponses.size(); i++) {
+            echoed &= pipelinedResponses.get(i).getRequestId() == i + 1;
+        }
+        System.out.println((echoed ? "PASSED":"FAILED") + ": requestIds echoed");
+
+        // Test 4
+        System.out.println("Test 4: Testing batch request");
+        List<Request> batch = new ArrayList<>();
+        batch.add(new Request(Request.RequestType.SEND_MOVE, gson.toJson(2), 1));
+        batch.add(new Request(Request.RequestType.REQUEST_MOVE, null, 2));
+        BatchResponse batchResponse = scUser1.sendRequest(new Request(Request.RequestType.BATCH, gson.toJson(batch)), BatchResponse.class);
+        System.out.println(((batchResponse.getResponses().size() == 2) ? "PASSED":"FAILED") + ": one response per sub-request");
+        System.out.println(((batchResponse.getResponses().get(0).getStatus() == Response.ResponseStatus.SUCCESS
+                && batchResponse.getResponses().get(0).getRequestId() == 1
+                && batchResponse.getResponses().get(1).getRequestId() == 2) ? "PASSED":"FAILED") + ": sub-responses in order");
+
+        // Test 5
+        System.out.println("Test 5: Testing subscribe to move push");
+        Response response = scUser1.sendRequest(new Request(Request.RequestType.SUBSCRIBE_MOVES, null), Response.class);
+        System.out.println(((response.getStatus() == Response.ResponseStatus.SUCCESS) ? "PASSED":"FAILED") + ": subscribed");
+
+        // Test 6
+        System.out.println("Test 6: Testing pushed move");
+        scUser2.sendRequest(new Request(Request.RequestType.SEND_MOVE, gson.toJson(0)), Response.class);
+        gamingResponse = scUser1.receive(GamingResponse.class);
+        System.out.println(((gamingResponse.getMove() == 0 && gamingResponse.isActive()) ? "PASSED":"FAILED") + ": move 0 pushed");
+
+        // Test 7
+        System.out.println("Test 7: Testing pushed abort");
+        scUser2.sendRequest(new Request(Request.RequestType.ABORT_GAME, null), Response.class);
+        gamingResponse = scUser1.receive(GamingResponse.class);
+        System.out.println(((!gamingResponse.isActive() && gamingResponse.getMessage().equals("Opponent Abort")) ? "PASSED":"FAILED") + ": abort pushed");
+
+        // Test 8
+        System.out.println("Test 8: Testing protocol negotiation");
+        SocketClientHelper scUser3 = new SocketClientHelper();
+        response = scUser3.negotiate(WireProtocol.BINARY);
+        System.out.println(((response.getStatus() == Response.ResponseStatus.SUCCESS && response.getMessage().equals("binary/1")) ? "PASSED":"FAILED") + ": binary/1 accepted");
+
+        // Test 9
+        System.out.println("Test 9: Testing binary protocol");
+        User user3 = new User("user3", "1234", "Carl Brown", false);
+        scUser3.sendRequest(new Request(Request.RequestType.REGISTER, gson.toJson(user3)), Response.class);
+        response = scUser3.sendRequest(new Request(Request.RequestType.LOGIN, gson.toJson(user3), 7), Response.class);
+        System.out.println(((response.getStatus() == Response.ResponseStatus.SUCCESS && response.getRequestId() == 7) ? "PASSED":"FAILED") + ": login over binary/1");
+        pairingResponse = scUser3.sendRequest(new Request(Request.RequestType.UPDATE_PAIRING, null), PairingResponse.class);
+        System.out.println(((pairingResponse.getAvailableUsers() != null) ? "PASSED":"FAILED") + ": pairing response over binary/1");
+
+        // Test 10
+        System.out.println("Test 10: Testing frames larger than 64 KB");
+        SocketClientHelper scUser4 = new SocketClientHelper();
+        SocketClientHelper scUser5 = new SocketClientHelper();
+        scUser4.negotiate(WireProtocol.JSON_STREAM);
+        scUser5.negotiate(WireProtocol.JSON_STREAM);
+        User user4 = new User("user4", "1234", "D".repeat(70000), false);
+        User user5 = new User("user5", "1234", "Eve White", false);
+        response = scUser4.sendRequest(new Request(Request.RequestType.REGISTER, gson.toJson(user4)), Response.class);
+        System.out.println(((response == null) ? "PASSED":"FAILED") + ": large request refused before login");
+        scUser5.sendRequest(new Request(Request.RequestType.REGISTER, gson.toJson(user5)), Response.class);
+        scUser5.sendRequest(new Request(Request.RequestType.LOGIN, gson.toJson(user5)), Response.class);
+        response = scUser5.sendRequest(new Request(Request.RequestType.REGISTER, gson.toJson(user4)), Response.class);
+        System.out.println(((response.getStatus() == Response.ResponseStatus.SUCCESS) ? "PASSED":"FAILED") + ": large request over json/2");
+        scUser4 = new SocketClientHelper();
+        scUser4.negotiate(WireProtocol.JSON_STREAM);
+        scUser4.sendRequest(new Request(Request.RequestType.LOGIN, gson.toJson(new User("user4", "1234", null, false))), Response.class);
+        pairingResponse = scUser5.sendRequest(new Request(Request.RequestType.UPDATE_PAIRING, null), PairingResponse.class);
+        boolean received = false;
+        for (User user : pairingResponse.getAvailableUsers()) {
+            received |= user.getUsername().equals("user4") && user.getDisplayName().length() == 70000;
+        }
+        System.out.println((received ? "PASSED":"FAILED") + ": large response over json/2");
+
+        // Test 11
+        System.out.println("Test 11: Testing compressed frames");
+        SocketClientHelper scUser6 = new SocketClientHelper();
+        response = scUser6.negotiate(WireProtocol.JSON_STREAM, true);
+        System.out.println(((response.getStatus() == Response.ResponseStatus.SUCCESS) ? "PASSED":"FAILED") + ": json/2+deflate accepted");
+        User user6 = new User("user6", "1234", "Fay Green", false);
+        scUser6.sendRequest(new Request(Request.RequestType.REGISTER, gson.toJson(user6)), Response.class);
+        scUser6.sendRequest(new Request(Request.RequestType.LOGIN, gson.toJson(user6)), Response.class);
+        long compressedFrames = ServerMetrics.getInstance().getCompressedFrames();
+        for (int i = 0; i < 2; i++) { // the second response reuses the dictionary of the first
+            pairingResponse = scUser6.sendRequest(new Request(Request.RequestType.UPDATE_PAIRING, null), PairingResponse.class);
+        }
+        received = false;
+        for (User user : pairingResponse.getAvailableUsers()) {
+            received |= user.getUsername().equals("user4") && user.getDisplayName().length() == 70000;
+        }
+        System.out.println(((received && ServerMetrics.getInstance().getCompressedFrames() == compressedFrames + 2
+                && ServerMetrics.getInstance().getCompressionRatio() < 0.1) ? "PASSED":"FAILED") + ": large response compressed");
+        response = scUser6.sendRequest(new Request(Request.RequestType.REQUEST_MOVE, null), Response.class);
+        System.out.println(((response != null && ServerMetrics.getInstance().getCompressedFrames() == compressedFrames + 2) ? "PASSED":"FAILED") + ": small response not compressed");
+        SocketClientHelper scLegacy = new SocketClientHelper();
+        response = scLegacy.negotiate(WireProtocol.JSON, true);
+        System.out.println(((response.getStatus() == Response.ResponseStatus.FAILURE) ? "PASSED":"FAILED") + ": json/1+deflate rejected");
+
+        // Test 12
+        System.out.println("Test 12: Testing heartbeat");
+        SocketClientHelper scUser7 = new SocketClientHelper();
+        SocketClientHelper scUser8 = new SocketClientHelper();
+        User user7 = new User("user7", "1234", "Gus Black", false);
+        User user8 = new User("user8", "1234", "Hal Gray", false);
+        scUser7.sendRequest(new Request(Request.RequestType.REGISTER, gson.toJson(user7)), Response.class);
+        scUser7.sendRequest(new Request(Request.RequestType.LOGIN, gson.toJson(user7)), Response.class);
+        scUser8.sendRequest(new Request(Request.RequestType.REGISTER, gson.toJson(user8)), Response.class);
+        scUser8.sendRequest(new Request(Request.RequestType.LOGIN, gson.toJson(user8)), Response.class);
+        for (int i = 0; i < 6; i++) { // only user8 keeps its session alive
+            Thread.sleep(500);
+            response = scUser8.sendRequest(new Request(Request.RequestType.PING, null), Response.class);
+        }
+        System.out.println(((response.getMessage().equals("Pong") && DatabaseHelper.getInstance().getUser("user8").isOnline()) ? "PASSED":"FAILED") + ": pinged session kept");
+
+        // Test 13
+        System.out.println("Test 13: Testing idle session reaping");
+        System.out.println((!DatabaseHelper.getInstance().getUser("user7").isOnline() ? "PASSED":"FAILED") + ": idle user set offline");
+        System.out.println((scUser7.receive(Response.class) == null ? "PASSED":"FAILED") + ": idle connection closed");
+
+        // Test 14
+        System.out.println("Test 14: Testing max sessions");
+        int liveSessions = SessionRegistry.getInstance().liveCount();
+        List<SocketClientHelper> crowd = new ArrayList<>();
+        int pongs = 0;
+        int busy = 0;
+        for (int i = 0; i < 25; i++) {
+            SocketClientHelper client = new SocketClientHelper();
+            crowd.add(client);
+            response = client.sendRequest(new Request(Request.RequestType.PING, null), Response.class);
+            if (response != null && response.getMessage().equals("Pong")) {
+                pongs++;
+            } else if (response != null && response.getMessage().equals("Server Busy")) {
+                busy++;
+            }
+        }
+        System.out.println(((pongs > 0 && busy > 0 && pongs + busy == 25) ? "PASSED":"FAILED") + ": extra sessions answered Server Busy");
+        System.out.println(((ServerMetrics.getInstance().getRejectedSessions() == busy) ? "PASSED":"FAILED") + ": rejected sessions counted");
+        for (SocketClientHelper client : crowd) {
+            client.close();
+        }
+        for (int i = 0; i < 100 && SessionRegistry.getInstance().liveCount() > liveSessions; i++) {
+            Thread.sleep(50); // the server notices the closed sessions asynchronously
+        }
+
+        // Test 15
+        System.out.println("Test 15: Testing lobby version deltas");
+        User user9 = new User("user9", "1234", "Grace Hopper", false);
+        SocketClientHelper scUser9 = new SocketClientHelper();
+        Request register = new Request(Request.RequestType.REGISTER, null);
+        register.setPayload(user9);
+        Request login = new Request(Request.RequestType.LOGIN, null);
+        login.setPayload(user9);
+        scUser9.sendRequest(register, Response.class);
+        response = scUser9.sendRequest(login, Response.class);
+        System.out.println((response.getStatus() == Response.ResponseStatus.SUCCESS ? "PASSED":"FAILED") + ": login with typed payload");
+        PairingResponse snapshot = scUser9.sendRequest(new Request(Request.RequestType.UPDATE_PAIRING, null), PairingResponse.class);
+        Request updateSince = new Request(Request.RequestType.UPDATE_PAIRING, null);
+        updateSince.setPayload(snapshot.getLobbyVersion());
+        pairingResponse = scUser9.sendRequest(updateSince, PairingResponse.class);
+        System.out.println((pairingResponse.isDelta() && pairingResponse.getMessage().equals("Unchanged") ? "PASSED":"FAILED") + ": unchanged lobby");
+        User user11 = new User("user11", "1234", "Ada Lovelace", false);
+        SocketClientHelper scUser11 = new SocketClientHelper();
+        scUser11.sendRequest(new Request(Request.RequestType.REGISTER, gson.toJson(user11)), Response.class);
+        scUser11.sendRequest(new Request(Request.RequestType.LOGIN, gson.toJson(user11)), Response.class);
+        for (int i = 0; i < 20; i++) { // the change is recorded by the notifier thread
+            pairingResponse = scUser9.sendRequest(updateSince, PairingResponse.class);
+            if (!pairingResponse.getMessage().equals("Unchanged")) {
+                break;
+            }
+            Thread.sleep(50);
+        }
+        System.out.println((pairingResponse.isDelta() && pairingResponse.getLobbyVersion() > snapshot.getLobbyVersion()
+                && pairingResponse.getAvailableUsers().size() == 1 && pairingResponse.getAvailableUsers().get(0).getUsername().equals("user11") ? "PASSED":"FAILED") + ": only the new user sent");
+        scUser11.close();
+
+        // Test 16
+        System.out.println("Test 16: Testing graceful shutdown");
+        scUser9.sendRequest(new Request(Request.RequestType.SUBSCRIBE_PAIRING, null), PairingResponse.class);
+        User user10 = new User("user10", "1234", "Alan Kay", false);
+        SocketClientHelper scUser10 = new SocketClientHelper();
+        scUser10.sendRequest(new Request(Request.RequestType.REGISTER, gson.toJson(user10)), Response.class);
+        scUser10.sendRequest(new Request(Request.RequestType.LOGIN, gson.toJson(user10)), Response.class);
+        socketServer.stop(500);
+        boolean notified = false;
+        for (response = scUser9.receive(Response.class); response != null; response = scUser9.receive(Response.class)) {
+            notified |= "Server Shutdown".equals(response.getMessage());
+        }
+        System.out.println((notified ? "PASSED":"FAILED") + ": subscribed client told about the shutdown");
+        System.out.println((scUser10.receive(Response.class) == null ? "PASSED":"FAILED") + ": lock-step client closed without an extra frame");
+        System.out.println((!DatabaseHelper.getInstance().getUser("user9").isOnline() ? "PASSED":"FAILED") + ": remaining users set offline");
+        boolean refused;
+        try (Socket probe = new Socket("127.0.0.1", 5850)) {
+            refused = !probe.isConnected();
+        } catch (IOException e) {
+            refused = true;
+        }
+        System.out.println((refused ? "PASSED":"FAILED") + ": new connections refused");
+        scUser9.close();
+        scUser10.close();
+
+        //Close SocketClients
+        scUser1.close();
+        scUser2.close();
+        scUser3.close();
+        scUser4.close();
+        scUser5.close();
+        scUser6.close();
+        scLegacy.close();
+        scUser7.close();
+        scUser8.close();
+    }
+}
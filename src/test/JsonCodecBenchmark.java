@@ -0,0 +1,102 @@
+package test;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import model.Event;
+import model.User;
+import socket.BatchResponse;
+import socket.GamingResponse;
+import socket.JsonCodec;
+import socket.PairingResponse;
+import socket.Request;
+import socket.Response;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntSupplier;
+
+/**
+ * The `JsonCodecBenchmark` class compares the shared `JsonCodec` Gson with the Gson every session used to create:
+ * the cost of building one per session, the cost of tagging the responses of a batch with their class,
+ * and the typed request payload with the legacy data string.
+ * Each case is warmed up first, then timed over several rounds, e.g. `JsonCodecBenchmark 200000`.
+ */
+public class JsonCodecBenchmark {
+
+    /**
+     * Prevents the JIT from removing the benchmarked code
+     */
+    private static long sink;
+
+    /**
+     * The main method that runs the benchmark
+     *
+     * @param args The number of operations per round
+     */
+    public static void main(String[] args) {
+        int operations = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+
+        Gson reflective = new GsonBuilder().serializeNulls().create();
+        Gson shared = JsonCodec.getGson();
+
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            users.add(new User("user" + i, "", "Display Name " + i, true));
+        }
+        PairingResponse pairingResponse = new PairingResponse(Response.ResponseStatus.SUCCESS, null, users,
+                new Event(1, "user1", "user2", Event.EventStatus.PENDING, null, -1), null);
+        Request request = new Request(Request.RequestType.SEND_MOVE, "4", 12);
+        BatchResponse batchResponse = new BatchResponse(Response.ResponseStatus.SUCCESS, "Batch Handled", List.of(
+                new GamingResponse(Response.ResponseStatus.SUCCESS, "Move Update", 4, true), pairingResponse));
+        String batchJson = shared.toJson(batchResponse);
+        User user = users.get(0);
+        String legacyLoginJson = reflective.toJson(new Request(Request.RequestType.LOGIN, reflective.toJson(user)));
+        Request login = new Request(Request.RequestType.LOGIN, null);
+        login.setPayload(user);
+        String loginJson = shared.toJson(login);
+
+        System.out.println("Operations per round: " + operations);
+        report("New Gson Per Session", run(() -> new GsonBuilder().serializeNulls().create().toJson(request).length(), operations / 100),
+                run(() -> JsonCodec.getGson().toJson(request).length(), operations / 100));
+        report("Encode BatchResponse", run(() -> reflective.toJson(batchResponse).length(), operations / 10),
+                run(() -> shared.toJson(batchResponse).length(), operations / 10));
+        report("Decode BatchResponse", run(() -> reflective.fromJson(batchJson, BatchResponse.class).getResponses().size(), operations / 10),
+                run(() -> shared.fromJson(batchJson, BatchResponse.class).getResponses().size(), operations / 10));
+        report("Decode LOGIN Data", run(() -> reflective.fromJson(reflective.fromJson(legacyLoginJson, Request.class).getData(), User.class).getUsername().length(), operations),
+                run(() -> ((User) shared.fromJson(loginJson, Request.class).getPayload()).getUsername().length(), operations));
+        System.out.println("Sink: " + sink);
+    }
+
+    /**
+     * Runs an operation after a warm up and measures its best throughput over a few rounds
+     *
+     * @param operation The operation, its result is kept in {@link #sink}
+     * @param operations The number of operations per round
+     * @return the throughput in operations per second
+     */
+    private static double run(IntSupplier operation, int operations) {
+        for (int i = 0; i < operations; i++) {
+            sink += operation.getAsInt();
+        }
+        double best = 0;
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < operations; i++) {
+                sink += operation.getAsInt();
+            }
+            best = Math.max(best, operations * 1e9 / (System.nanoTime() - start));
+        }
+        return best;
+    }
+
+    /**
+     * Prints the throughput of both paths
+     *
+     * @param name The name of the case
+     * @param reflective Throughput of the reflective Gson, in operations per second
+     * @param shared Throughput of the shared Gson, in operations per second
+     */
+    private static void report(String name, double reflective, double shared) {
+        System.out.printf("%-24s reflective: %,12.0f ops/s   shared: %,12.0f ops/s   (x%.2f)%n", name, reflective, shared, shared / reflective);
+    }
+}
@@ -0,0 +1,94 @@
+package test;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import model.Event;
+import model.User;
+import socket.BatchResponse;
+import socket.GamingResponse;
+import socket.JsonCodec;
+import socket.PairingResponse;
+import socket.Request;
+import socket.Response;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The `JsonCodecTest` class checks that the shared Gson of the `JsonCodec` class produces the same JSON as the Gson
+ * every session used to build, reads batches back into their response classes and requests into their typed payloads.
+ */
+public class JsonCodecTest {
+
+    /**
+     * The main method that runs the test methods for the `JsonCodec` class.
+     *
+     * @param args Command-line arguments (not used in this example).
+     */
+    public static void main(String[] args) {
+        Gson reflective = new GsonBuilder().serializeNulls().create();
+        Gson shared = JsonCodec.getGson();
+
+        User user = new User("user1", "1234", "Smith Alex", true);
+        Event event = new Event(7, "user1", "user2", Event.EventStatus.PLAYING, "user2", 4);
+        Request request = new Request(Request.RequestType.SEND_MOVE, "4", 12);
+        Response response = new Response(Response.ResponseStatus.FAILURE, null);
+        GamingResponse gamingResponse = new GamingResponse(Response.ResponseStatus.SUCCESS, "Move Added", 4, true);
+        PairingResponse pairingResponse = new PairingResponse(Response.ResponseStatus.SUCCESS, null,
+                Arrays.asList(user, new User("user2", null, "Bob Johnson", true)), event, null);
+        BatchResponse batchResponse = new BatchResponse(Response.ResponseStatus.SUCCESS, "Batch Handled",
+                Arrays.asList(response, gamingResponse, pairingResponse));
+
+        /*
+         * Tests encoding
+         */
+        System.out.println("JsonCodec 1: Testing encoding matches reflective Gson");
+        System.out.println((shared.toJson(user).equals(reflective.toJson(user)) ? "PASSED":"FAILED") + ": User");
+        System.out.println((shared.toJson(event).equals(reflective.toJson(event)) ? "PASSED":"FAILED") + ": Event");
+        System.out.println((shared.toJson(request).equals(reflective.toJson(request)) ? "PASSED":"FAILED") + ": Request");
+        System.out.println((shared.toJson(response).equals(reflective.toJson(response)) ? "PASSED":"FAILED") + ": Response");
+        System.out.println((shared.toJson(gamingResponse).equals(reflective.toJson(gamingResponse)) ? "PASSED":"FAILED") + ": GamingResponse");
+        System.out.println((shared.toJson(pairingResponse).equals(reflective.toJson(pairingResponse)) ? "PASSED":"FAILED") + ": PairingResponse");
+        System.out.println((shared.toJson(batchResponse).replaceAll(",\"responseType\":\"\\w+\"", "").equals(reflective.toJson(batchResponse)) ? "PASSED":"FAILED") + ": BatchResponse, besides the response types");
+
+        /*
+         * Tests decoding
+         */
+        System.out.println("JsonCodec 2: Testing decoding");
+        Request decodedRequest = shared.fromJson("{\"type\":\"SEND_MOVE\",\"data\":\"4\",\"requestId\":12,\"extra\":[1,2]}", Request.class);
+        System.out.println((decodedRequest.getType() == Request.RequestType.SEND_MOVE && decodedRequest.getData().equals("4")
+                && decodedRequest.getRequestId() == 12 ? "PASSED":"FAILED") + ": Request, unknown field skipped");
+        System.out.println((shared.fromJson("{\"type\":\"UNKNOWN\"}", Request.class).getType() == null ? "PASSED":"FAILED") + ": unknown type read as null");
+        System.out.println((shared.fromJson(shared.toJson(event), Event.class).equals(event) ? "PASSED":"FAILED") + ": Event round trip");
+        PairingResponse decodedPairing = shared.fromJson(shared.toJson(pairingResponse), PairingResponse.class);
+        System.out.println((decodedPairing.getAvailableUsers().equals(pairingResponse.getAvailableUsers())
+                && decodedPairing.getInvitation().equals(event) && decodedPairing.getInvitationResponse() == null ? "PASSED":"FAILED") + ": PairingResponse round trip");
+        GamingResponse decodedGaming = shared.fromJson(shared.toJson(gamingResponse), GamingResponse.class);
+        System.out.println((decodedGaming.getMove() == 4 && decodedGaming.isActive() && decodedGaming.getMessage().equals("Move Added") ? "PASSED":"FAILED") + ": GamingResponse round trip");
+        List<Response> decodedResponses = shared.fromJson(shared.toJson(batchResponse), BatchResponse.class).getResponses();
+        System.out.println((decodedResponses.size() == 3 && decodedResponses.get(0).getClass() == Response.class
+                && decodedResponses.get(1) instanceof GamingResponse && ((GamingResponse) decodedResponses.get(1)).getMove() == 4
+                && decodedResponses.get(2) instanceof PairingResponse
+                && ((PairingResponse) decodedResponses.get(2)).getInvitation().equals(event) ? "PASSED":"FAILED") + ": BatchResponse round trip keeps sub-response classes");
+        System.out.println((shared.fromJson("{\"responses\":[{\"move\":4,\"status\":\"SUCCESS\"}]}", BatchResponse.class)
+                .getResponses().get(0).getStatus() == Response.ResponseStatus.SUCCESS ? "PASSED":"FAILED") + ": untyped sub-response read as Response");
+
+        /*
+         * Tests typed payloads
+         */
+        System.out.println("JsonCodec 3: Testing typed payloads");
+        Request login = new Request(Request.RequestType.LOGIN, null);
+        login.setPayload(user);
+        Object payload = shared.fromJson(shared.toJson(login), Request.class).getPayload();
+        System.out.println((payload instanceof User && payload.equals(user) ? "PASSED":"FAILED") + ": payload decoded to its type");
+        payload = shared.fromJson("{\"payload\":4,\"type\":\"SEND_MOVE\"}", Request.class).getPayload();
+        System.out.println((Integer.valueOf(4).equals(payload) ? "PASSED":"FAILED") + ": payload before type");
+        Request move = new Request(Request.RequestType.SEND_MOVE, null);
+        move.setPayload(4);
+        Request batch = new Request(Request.RequestType.BATCH, null);
+        batch.setPayload(Arrays.asList(move, new Request(Request.RequestType.SEND_MOVE, "5")));
+        List<?> subRequests = (List<?>) shared.fromJson(shared.toJson(batch), Request.class).getPayload();
+        System.out.println((Integer.valueOf(4).equals(((Request) subRequests.get(0)).getPayload())
+                && ((Request) subRequests.get(1)).getData().equals("5") ? "PASSED":"FAILED") + ": batch with typed and legacy sub-requests");
+        System.out.println((shared.fromJson("{\"type\":\"LOGIN\",\"data\":\"{}\"}", Request.class).getPayload() == null ? "PASSED":"FAILED") + ": legacy data string left as is");
+    }
+}
@@ -0,0 +1,63 @@
+package test;
+import model.User;
+import server.LobbyChangeLog;
+import socket.PairingResponse;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * The `LobbyChangeLogTest` class is responsible for testing the functionality of the `LobbyChangeLog` class.
+ */
+public class LobbyChangeLogTest {
+
+    /**
+     * The main method that runs the test methods for the `LobbyChangeLog` class.
+     *
+     * @param args Command-line arguments (not used in this example).
+     */
+    public static void main(String[] args) {
+        User user1 = new User("user1", "", "Smith Alex", true);
+        User user2 = new User("user2", "", "Bob Johnson", true);
+        User user3 = new User("user3", "", "Ahmad Suleiman", true);
+
+        /*
+         * Tests versioning
+         */
+        LobbyChangeLog log1 = new LobbyChangeLog(16);
+
+        System.out.println("Log 1: Testing versions");
+        System.out.println(((log1.update(Arrays.asList(user1, user2)) == 1) ? "PASSED":"FAILED") + ": version incremented on change");
+        System.out.println(((log1.update(Arrays.asList(user2, user1)) == 1) ? "PASSED":"FAILED") + ": version kept when unchanged");
+
+        /*
+         * Tests deltas
+         */
+        log1.update(Arrays.asList(user2, user3));
+        PairingResponse response1 = new PairingResponse();
+
+        System.out.println("Log 1: Testing deltas");
+        System.out.println((log1.fillDelta(response1, 1, "user2") ? "PASSED":"FAILED") + ": delta available");
+        System.out.println((response1.isDelta() && response1.getLobbyVersion() == 2 ? "PASSED":"FAILED") + ": delta flag and version");
+        System.out.println((response1.getAvailableUsers().equals(Collections.singletonList(user3)) ? "PASSED":"FAILED") + ": added users");
+        System.out.println((response1.getRemovedUsers().equals(Collections.singletonList("user1")) ? "PASSED":"FAILED") + ": removed users");
+        PairingResponse response2 = new PairingResponse();
+        log1.fillDelta(response2, 0, "user3");
+        System.out.println((response2.getAvailableUsers().equals(Collections.singletonList(user2)) && response2.getRemovedUsers().equals(Collections.singletonList("user1")) ? "PASSED":"FAILED") + ": changes merged, user left out of its own delta");
+        PairingResponse response3 = new PairingResponse();
+        log1.fillDelta(response3, 2, "user2");
+        System.out.println((response3.getAvailableUsers().isEmpty() && response3.getRemovedUsers().isEmpty() ? "PASSED":"FAILED") + ": empty delta when up to date");
+        System.out.println((!log1.fillDelta(new PairingResponse(), 3, "user2") ? "PASSED":"FAILED") + ": unknown version needs a snapshot");
+
+        /*
+         * Tests the bound
+         */
+        LobbyChangeLog log2 = new LobbyChangeLog(2);
+        log2.update(Arrays.asList(user1, user2));
+        log2.update(Collections.singletonList(user3));
+
+        System.out.println("Log 2: Testing capacity");
+        System.out.println((!log2.fillDelta(new PairingResponse(), 1, "user1") ? "PASSED":"FAILED") + ": version older than the kept changes needs a snapshot");
+        System.out.println((log2.fillDelta(new PairingResponse(), 2, "user1") ? "PASSED":"FAILED") + ": current version still served");
+    }
+}
@@ -0,0 +1,62 @@
+package test;
+import server.OutboundQueue;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The `OutboundQueueTest` class is responsible for testing the functionality of the `OutboundQueue` class.
+ */
+public class OutboundQueueTest {
+
+    /**
+     * The main method that runs the test methods for the `OutboundQueue` class.
+     *
+     * @param args Command-line arguments (not used in this example).
+     */
+    public static void main(String[] args) {
+        ByteBuffer[] batch = new ByteBuffer[16];
+
+        /*
+         * Tests queuing and draining
+         */
+        OutboundQueue queue1 = new OutboundQueue();
+        queue1.offer(new byte[]{1}, null);
+        queue1.offer(new byte[]{2}, null);
+
+        System.out.println("Queue 1: Testing frames drained in order");
+        System.out.println(((queue1.peek(batch) == 2 && batch[0].get(0) == 1 && batch[1].get(0) == 2) ? "PASSED":"FAILED") + ": peek");
+        batch[0].position(1);
+        queue1.removeWritten();
+        System.out.println(((queue1.peek(batch) == 1 && batch[0].get(0) == 2) ? "PASSED":"FAILED") + ": removeWritten");
+        batch[0].position(1);
+        queue1.removeWritten();
+        System.out.println((queue1.isEmpty() ? "PASSED":"FAILED") + ": isEmpty");
+
+        /*
+         * Tests coalescing
+         */
+        OutboundQueue queue2 = new OutboundQueue();
+        queue2.offer(new byte[]{1}, "lobby");
+        queue2.offer(new byte[]{2}, null);
+        queue2.offer(new byte[]{3}, "lobby");
+
+        System.out.println("Queue 2: Testing coalescing");
+        System.out.println(((queue2.peek(batch) == 2 && batch[0].get(0) == 3 && batch[1].get(0) == 2) ? "PASSED":"FAILED") + ": newer frame replaces unsent frame in place");
+        queue2.offer(new byte[]{4}, "lobby");
+        System.out.println(((queue2.peek(batch) == 3 && batch[0].get(0) == 3 && batch[2].get(0) == 4) ? "PASSED":"FAILED") + ": frame being written is not replaced");
+
+        /*
+         * Tests slow consumer detection
+         */
+        OutboundQueue.setHighWaterMark(100);
+        OutboundQueue queue3 = new OutboundQueue();
+
+        System.out.println("Queue 3: Testing slow consumer detection");
+        System.out.println((queue3.offer(new byte[150], null) ? "PASSED":"FAILED") + ": over high-water mark tolerated");
+        System.out.println((!queue3.isSlow(System.currentTimeMillis()) ? "PASSED":"FAILED") + ": not slow yet");
+        System.out.println((queue3.isSlow(System.currentTimeMillis() + 10_000) ? "PASSED":"FAILED") + ": slow when over high-water mark too long");
+        System.out.println((!queue3.offer(new byte[300], null) ? "PASSED":"FAILED") + ": rejected over hard limit");
+        queue3.clear();
+        System.out.println((!queue3.isSlow(System.currentTimeMillis() + 10_000) ? "PASSED":"FAILED") + ": not slow once drained");
+    }
+}
@@ -107,6 +107,7 @@ public class PairingTest {
 
                 // Disconnect user4
                 scUser4.close();
+                Thread.sleep(200); // the server notices the disconnect asynchronously
 
                 // Test 9
                 System.out.println("Test 9: Testing PairingResponse after user4 disconnects");
@@ -202,6 +203,20 @@ public class PairingTest {
                 pairingResponse = scUser2.sendRequest(request, PairingResponse.class);
                 System.out.println(gson.toJson(pairingResponse));
 
+                // Test 24
+                System.out.println("Test 24: Testing Subscribe to pairing updates");
+                request = new Request(Request.RequestType.SUBSCRIBE_PAIRING, null);
+                pairingResponse = scUser2.sendRequest(request, PairingResponse.class);
+                System.out.println(gson.toJson(pairingResponse));
+
+                // Disconnect user3
+                scUser3.close();
+
+                // Test 25
+                System.out.println("Test 25: Testing pushed PairingResponse after user3 disconnects");
+                pairingResponse = scUser2.receive(PairingResponse.class);
+                System.out.println(gson.toJson(pairingResponse));
+
                 //Close SocketClients
                 scUser1.close();
                 scUser2.close();
@@ -21,6 +21,7 @@ public class RequestTest {
         System.out.println("Request 1: Testing Default Constructor");
         System.out.println(((request1.getType()==null) ? "PASSED":"FAILED") + ": type");
         System.out.println(((request1.getData()==null) ? "PASSED":"FAILED") + ": data");
+        System.out.println(((request1.getRequestId()==null) ? "PASSED":"FAILED") + ": requestId");
 
         Request request2 = new Request(Request.RequestType.SEND_INVITATION, "bob");
 
@@ -28,16 +29,25 @@ public class RequestTest {
         System.out.println(((request2.getType()==Request.RequestType.SEND_INVITATION) ? "PASSED":"FAILED") + ": type");
         System.out.println(((request2.getData().equals("bob")) ? "PASSED":"FAILED") + ": data");
 
+        Request request4 = new Request(Request.RequestType.SEND_INVITATION, "bob", 7);
+
+        System.out.println("Request 4: Testing Parameterized Constructor with requestId");
+        System.out.println(((request4.getType()==Request.RequestType.SEND_INVITATION) ? "PASSED":"FAILED") + ": type");
+        System.out.println(((request4.getData().equals("bob")) ? "PASSED":"FAILED") + ": data");
+        System.out.println(((request4.getRequestId()==7) ? "PASSED":"FAILED") + ": requestId");
+
         /*
          * Tests all getters and setters
          */
         Request request3 = new Request();
         request3.setType(Request.RequestType.SEND_INVITATION);
         request3.setData("bob");
+        request3.setRequestId(3);
 
         System.out.println("Request 3: Testing Getters and Setters");
         System.out.println(((request3.getType()==Request.RequestType.SEND_INVITATION) ? "PASSED":"FAILED") + ": type");
         System.out.println(((request3.getData().equals("bob")) ? "PASSED":"FAILED") + ": data");
+        System.out.println(((request3.getRequestId()==3) ? "PASSED":"FAILED") + ": requestId");
 
     }
 
@@ -16,6 +16,7 @@ public class ResponseTest {
         System.out.println("Response 1: Testing Default Constructor");
         System.out.println(((response1.getStatus()==null) ? "PASSED":"FAILED") + ": status");
         System.out.println(((response1.getMessage()==null) ? "PASSED":"FAILED") + ": message");
+        System.out.println(((response1.getRequestId()==null) ? "PASSED":"FAILED") + ": requestId");
 
         Response response2 = new Response(Response.ResponseStatus.SUCCESS, "Invitation Sent");
 
@@ -29,9 +30,11 @@ public class ResponseTest {
         Response response3 = new Response();
         response3.setStatus(Response.ResponseStatus.SUCCESS);
         response3.setMessage("Invitation Sent");
+        response3.setRequestId(3);
 
         System.out.println("Response 3: Testing Default Constructor");
         System.out.println(((response3.getStatus()==Response.ResponseStatus.SUCCESS) ? "PASSED":"FAILED") + ": status");
         System.out.println(((response3.getMessage().equals("Invitation Sent")) ? "PASSED":"FAILED") + ": message");
+        System.out.println(((response3.getRequestId()==3) ? "PASSED":"FAILED") + ": requestId");
     }
 }
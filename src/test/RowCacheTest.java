@@ -0,0 +1,69 @@
+package test;
+import model.User;
+import server.RowCache;
+
+/**
+ * The `RowCacheTest` class is responsible for testing the functionality of the `RowCache` class.
+ */
+public class RowCacheTest {
+
+    /**
+     * The main method that runs the test methods for the `RowCache` class.
+     *
+     * @param args Command-line arguments (not used in this example).
+     * @throws InterruptedException if interrupted while waiting for rows to become idle
+     */
+    public static void main(String[] args) throws InterruptedException {
+        User user1 = new User("user1", "1234", "Smith Alex", true);
+        User user2 = new User("user2", "1234", "Bob Johnson", true);
+        User user3 = new User("user3", "1234", "Ahmad Suleiman", true);
+
+        /*
+         * Tests reads and writes
+         */
+        RowCache<String, User> cache1 = new RowCache<>(16, RowCacheTest::copy, user -> 60_000);
+
+        System.out.println("Cache 1: Testing reads and writes");
+        System.out.println(((cache1.get("user1") == null && cache1.getMisses() == 1) ? "PASSED":"FAILED") + ": miss counted");
+        cache1.fill("user1", user1, cache1.stamp());
+        User cached = cache1.get("user1");
+        System.out.println(((cached != null && cached.getDisplayName().equals("Smith Alex") && cache1.getHits() == 1) ? "PASSED":"FAILED") + ": filled row hit");
+        cached.setOnline(false);
+        System.out.println((cache1.get("user1").isOnline() ? "PASSED":"FAILED") + ": cached row not shared");
+        long stamp = cache1.stamp();
+        cache1.put("user2", user2);
+        cache1.fill("user3", user3, stamp);
+        System.out.println((cache1.get("user3") == null ? "PASSED":"FAILED") + ": row read before a write not cached");
+        cache1.put("user1", new User("user1", "1234", "Alex Smith", true));
+        System.out.println((cache1.get("user1").getDisplayName().equals("Alex Smith") ? "PASSED":"FAILED") + ": write replaces cached row");
+        cache1.removeIf(user -> user.getUsername().equals("user2"));
+        System.out.println((cache1.get("user2") == null ? "PASSED":"FAILED") + ": removed row");
+
+        /*
+         * Tests eviction
+         */
+        RowCache<String, User> cache2 = new RowCache<>(2, RowCacheTest::copy, user -> user.isOnline() ? 60_000 : 1);
+        cache2.put("user1", user1);
+        cache2.put("user2", user2);
+        cache2.get("user1");
+        cache2.put("user3", user3);
+
+        System.out.println("Cache 2: Testing eviction");
+        System.out.println(((cache2.get("user2") == null && cache2.get("user1") != null && cache2.getEvictions() == 1) ? "PASSED":"FAILED") + ": least recently used row evicted");
+        cache2.put("user3", new User("user3", "1234", "Ahmad Suleiman", false));
+        Thread.sleep(5);
+        System.out.println(((cache2.get("user3") == null && cache2.getEvictions() == 2) ? "PASSED":"FAILED") + ": idle row evicted");
+        cache2.setMaxSize(0);
+        cache2.put("user2", user2);
+        System.out.println((cache2.size() == 0 ? "PASSED":"FAILED") + ": disabled cache keeps nothing");
+    }
+
+    /**
+     * Copies a user
+     * @param user The user
+     * @return the copy
+     */
+    private static User copy(User user) {
+        return new User(user.getUsername(), user.getPassword(), user.getDisplayName(), user.isOnline());
+    }
+}
@@ -2,15 +2,20 @@ package test;
 
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 import server.SocketServer;
 import socket.*;
@@ -45,6 +50,15 @@ public class SocketClientHelper {
      */
     private DataOutputStream outputStream;
 
+    /**
+     * The protocol of the frames, starts as {@link WireProtocol#JSON}
+     */
+    private WireProtocol protocol = WireProtocol.JSON;
+
+    /**
+     * Inflates compressed responses, null unless compression was negotiated
+     */
+    private Inflater inflater;
 
     /**
      * A private constructor that instantiate the class and set attributes
@@ -55,7 +69,7 @@ public class SocketClientHelper {
         int PORT = 5850;
 
         LOGGER = Logger.getLogger(SocketServer.class.getName());
-        gson = new GsonBuilder().serializeNulls().create();
+        gson = JsonCodec.getGson();
 
         try {
             socket = new Socket(InetAddress.getByName(HOSTNAME), PORT);
@@ -76,13 +90,11 @@ public class SocketClientHelper {
     public <T> T sendRequest(Request request, Class<T> responseClass) {
         try {
             // Send Request
-            String serializedRequest = gson.toJson(request);
-            outputStream.writeUTF(serializedRequest);
+            writeRequest(request);
             outputStream.flush();
 
             // Get Response
-            String serializedResponse = inputStream.readUTF();
-            return gson.fromJson(serializedResponse, responseClass);
+            return readResponse(responseClass);
         } catch (IOException e) {
             close();
             LOGGER.log(Level.SEVERE, e.getMessage(), e);
@@ -92,6 +104,141 @@ public class SocketClientHelper {
         return null;
     }
 
+    /**
+     * Sends many requests without waiting for a response in between, then reads all responses
+     * @param requests The requests to be sent to the server, each with its own requestId
+     * @param responseClass The class of response we expect from the server
+     * @return Objects of the responseClass received from the server, in the order they arrived
+     * @param <T> {@link Response} class or one of its subclasses i.e., {@link GamingResponse} and {@link PairingResponse}
+     */
+    public <T> List<T> sendPipelinedRequests(List<Request> requests, Class<T> responseClass) {
+        List<T> responses = new ArrayList<>();
+        try {
+            // Send Requests
+            for (Request request : requests) {
+                writeRequest(request);
+            }
+            outputStream.flush();
+
+            // Get Responses
+            for (int i = 0; i < requests.size(); i++) {
+                responses.add(readResponse(responseClass));
+            }
+        } catch (IOException e) {
+            close();
+            LOGGER.log(Level.SEVERE, e.getMessage(), e);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, e.getMessage(), e);
+        }
+        return responses;
+    }
+
+    /**
+     * Waits for a message the server sends without a request, e.g. a pushed opponent move
+     * @param responseClass The class of message we expect from the server
+     * @return Object of the responseClass received from the server
+     * @param <T> {@link Response} class or one of its subclasses i.e., {@link GamingResponse} and {@link PairingResponse}
+     */
+    public <T> T receive(Class<T> responseClass) {
+        try {
+            return readResponse(responseClass);
+        } catch (IOException e) {
+            close();
+            LOGGER.log(Level.SEVERE, e.getMessage(), e);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, e.getMessage(), e);
+        }
+        return null;
+    }
+
+    /**
+     * Sends a HELLO request and switches to the protocol once the server accepts it
+     * @param protocol The protocol to use for the next requests
+     * @return the response of the server
+     */
+    public Response negotiate(WireProtocol protocol) {
+        return negotiate(protocol, false);
+    }
+
+    /**
+     * Sends a HELLO request and switches to the protocol once the server accepts it
+     * @param protocol The protocol to use for the next requests
+     * @param compression If large responses must be compressed
+     * @return the response of the server
+     */
+    public Response negotiate(WireProtocol protocol, boolean compression) {
+        String protocolName = protocol.getProtocolName() + (compression ? "+deflate" : "");
+        Response response = sendRequest(new Request(Request.RequestType.HELLO, gson.toJson(protocolName)), Response.class);
+        if (response != null && response.getStatus() == Response.ResponseStatus.SUCCESS) {
+            this.protocol = protocol;
+            this.inflater = compression ? new Inflater(true) : null;
+        }
+        return response;
+    }
+
+    /**
+     * Writes a request in the current protocol, without flushing
+     * @param request The request to be sent to the server
+     * @throws IOException When the request can not be written
+     */
+    private void writeRequest(Request request) throws IOException {
+        if (protocol == WireProtocol.JSON) {
+            outputStream.writeUTF(gson.toJson(request));
+        } else if (protocol == WireProtocol.JSON_STREAM) {
+            byte[] body = gson.toJson(request).getBytes(StandardCharsets.UTF_8);
+            outputStream.writeInt(body.length);
+            outputStream.write(body);
+        } else {
+            byte[] body = BinaryCodec.encodeRequest(request);
+            outputStream.writeInt(body.length);
+            outputStream.write(body);
+        }
+    }
+
+    /**
+     * Reads a response in the current protocol (blocking operation)
+     * @param responseClass The class of response we expect from the server
+     * @return Object of the responseClass received from the server
+     * @param <T> {@link Response} class or one of its subclasses i.e., {@link GamingResponse} and {@link PairingResponse}
+     * @throws IOException When the response can not be read
+     */
+    private <T> T readResponse(Class<T> responseClass) throws IOException {
+        if (protocol == WireProtocol.JSON) {
+            return gson.fromJson(inputStream.readUTF(), responseClass);
+        }
+        int header = inputStream.readInt();
+        byte[] body = new byte[header & 0x7FFFFFFF];
+        inputStream.readFully(body);
+        if (header < 0) { // compressed body
+            body = inflate(body);
+        }
+        if (protocol == WireProtocol.JSON_STREAM) {
+            return gson.fromJson(new String(body, StandardCharsets.UTF_8), responseClass);
+        }
+        return responseClass.cast(BinaryCodec.decodeResponse(body));
+    }
+
+    /**
+     * Inflates a compressed response body, the inflater keeps its dictionary between responses
+     * @param body The compressed body
+     * @return the body
+     * @throws IOException When the body is not valid deflate data
+     */
+    private byte[] inflate(byte[] body) throws IOException {
+        ByteArrayOutputStream inflated = new ByteArrayOutputStream(body.length * 4);
+        byte[] chunk = new byte[8192];
+        inflater.setInput(body);
+        try {
+            int count;
+            while ((count = inflater.inflate(chunk)) > 0 || !inflater.needsInput()) {
+                inflated.write(chunk, 0, count);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        }
+        return inflated.toByteArray();
+    }
+
     /**
      * Closes the socket connection with the server and all IO Streams
      * Destruct the singleton instance
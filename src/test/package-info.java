@@ -7,6 +7,16 @@
  * - `SocketServerTest`: Validates the functionality of the `SocketServer` class, a server application that handles socket requests.
  * - `RequestTest`: Tests the `Request` class, which represents requests sent to a server and includes request types and data.
  * - `ResponseTest`: Validates the behavior of the `Response` class, representing responses to requests with status and messages.
+ * - `BinaryCodecTest`: Tests the `BinaryCodec` class, covering round trips and the rejection of malformed frames.
+ * - `OutboundQueueTest`: Tests the `OutboundQueue` class, covering draining order, coalescing and slow consumer detection.
+ * - `LobbyChangeLogTest`: Tests the `LobbyChangeLog` class, covering versions, deltas and the bound on the kept changes.
+ * - `AvailabilityIndexTest`: Tests the `AvailabilityIndex` class, covering online, busy and freed users.
+ * - `RowCacheTest`: Tests the `RowCache` class, covering hits, misses, write-through and eviction.
+ * - `JsonCodecTest`: Checks that the shared `JsonCodec` Gson writes the same JSON as before, reads batches back into their classes
+ *   and requests into their typed payloads.
+ * - `GamingTest`: Plays a game between two clients, covering polled and pushed moves.
+ * - `ConnectionBenchmark`: Compares connection counts, latency and thread usage across the server modes.
+ * - `JsonCodecBenchmark`: Compares the shared `JsonCodec` Gson with building a Gson per session, and typed payloads with data strings.
  *
  * These test classes are essential for ensuring the correctness and reliability of the application's components and features.
  *